@@ -0,0 +1,65 @@
+package edu.library.benchmark;
+
+import edu.library.domain.model.Roles;
+import edu.library.service.AuthService;
+import edu.library.service.FineService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int users;
+
+    private Path dir;
+    private AuthService service;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = LibraryData.tempDir();
+        Path usersFile = dir.resolve("users.txt");
+        Path finesFile = dir.resolve("fines.txt");
+        LibraryData.writeUsers(usersFile, users);
+        // رصيد صفر للكل عشان login ما يكتب على الملف
+        LibraryData.writeFines(finesFile, 0);
+        service = new AuthService(usersFile.toString(), new FineService(finesFile.toString()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LibraryData.delete(dir);
+    }
+
+    @Benchmark
+    public Roles login() {
+        int i = cursor++ % users;
+        return service.login(LibraryData.username(i), "pw" + i);
+    }
+
+    @Benchmark
+    public Roles loginWrongPassword() {
+        return service.login(LibraryData.username(cursor++ % users), "wrong");
+    }
+}
@@ -0,0 +1,77 @@
+package edu.library.benchmark;
+
+import edu.library.service.BorrowRecordService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of reading the borrow history (constructor = loadRecords).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BorrowRecordServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int rows;
+
+    private Path dir;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = LibraryData.tempDir();
+        path = dir.resolve("borrow_records.txt").toString();
+        LibraryData.writeBorrowHistory(Path.of(path), rows, Math.max(1, rows / 20), Math.max(1, rows / 10));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LibraryData.delete(dir);
+    }
+
+    @Benchmark
+    public BorrowRecordService loadRecords() {
+        return new BorrowRecordService(path);
+    }
+
+    @Benchmark
+    public boolean hasActiveBorrows(UserCursor users) {
+        return users.service.hasActiveBorrows(users.next());
+    }
+
+    @State(Scope.Thread)
+    public static class UserCursor {
+        BorrowRecordService service;
+        int users;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(BorrowRecordServiceBenchmark bench) {
+            service = new BorrowRecordService(bench.path);
+            users = Math.max(1, bench.rows / 20);
+        }
+
+        String next() {
+            return LibraryData.username(cursor++ % users);
+        }
+    }
+}
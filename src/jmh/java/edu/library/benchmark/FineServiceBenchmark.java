@@ -0,0 +1,67 @@
+package edu.library.benchmark;
+
+import edu.library.service.FineService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FineServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int users;
+
+    // 0 = كل addFine بيحفظ الملف، غير هيك write-behind بنافذة بالـms
+    @Param({"0", "50"})
+    long flushWindowMillis;
+
+    private Path dir;
+    private FineService service;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = LibraryData.tempDir();
+        Path fines = dir.resolve("fines.txt");
+        LibraryData.writeFines(fines, users);
+        service = new FineService(fines.toString());
+        if (flushWindowMillis > 0) {
+            service.enableWriteBehind(flushWindowMillis, 10_000);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.close();
+        LibraryData.delete(dir);
+    }
+
+    @Benchmark
+    public void addFine() {
+        service.addFine(LibraryData.username(cursor++ % users), 1);
+    }
+
+    @Benchmark
+    public void saveBalances() {
+        service.saveBalances();
+    }
+}
@@ -0,0 +1,82 @@
+package edu.library.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic data files in the same formats the services read, so every benchmark starts
+ * from a realistic on-disk state.
+ */
+final class LibraryData {
+
+    static final String DUE = "2024-01-15";
+
+    private LibraryData() {
+    }
+
+    static Path tempDir() throws IOException {
+        return Files.createTempDirectory("library-bench");
+    }
+
+    // BOOK/CD بالتناوب، ٣ نسخ لكل عنوان
+    static void writeCatalog(Path file, int size) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < size; i++) {
+                w.write((i % 2 == 0 ? "BOOK" : "CD") + ";Title " + i + ";Author " + (i % 1000)
+                        + ";" + isbn(i) + ";3;3;null");
+                w.newLine();
+            }
+        }
+    }
+
+    // 10% من السجلات استعارات فعّالة والباقي مرجّعة
+    static void writeBorrowHistory(Path file, int rows, int users, int catalogSize) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < rows; i++) {
+                boolean active = i % 10 == 0;
+                w.write(username(i % users) + "," + isbn(i % catalogSize) + "," + DUE + ","
+                        + !active + "," + (active ? "null" : "2024-01-10"));
+                w.newLine();
+            }
+        }
+    }
+
+    static void writeUsers(Path file, int users) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < users; i++) {
+                w.write(username(i) + ",pw" + i + ",MEMBER," + username(i) + "@mail.com");
+                w.newLine();
+            }
+        }
+    }
+
+    static void writeFines(Path file, int users) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < users; i++) {
+                w.write(username(i) + "," + (i % 7 == 0 ? 0 : i % 100));
+                w.newLine();
+            }
+        }
+    }
+
+    static String isbn(int i) {
+        return "ISBN-" + i;
+    }
+
+    static String username(int i) {
+        return "user" + i;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
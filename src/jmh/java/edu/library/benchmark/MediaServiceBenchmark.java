@@ -0,0 +1,92 @@
+package edu.library.benchmark;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Media;
+import edu.library.service.BorrowRecordService;
+import edu.library.service.FineService;
+import edu.library.service.MediaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediaServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    // false = كل عملية بتكتب media.txt كامل، true = journal
+    @Param({"false", "true"})
+    boolean journal;
+
+    private Path dir;
+    private MediaService service;
+    private String[] keywords;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = LibraryData.tempDir();
+        Path media = dir.resolve("media.txt");
+        LibraryData.writeCatalog(media, size);
+
+        service = new MediaService(media.toString(),
+                new BorrowRecordService(dir.resolve("borrow_records.txt").toString()),
+                new FineService(dir.resolve("fines.txt").toString()),
+                () -> LocalDate.of(2024, 1, 1),
+                new FineCalculator());
+        if (journal) {
+            service.enableJournal(10_000);
+        }
+        keywords = new String[]{"Title " + (size / 2), "Author 42", LibraryData.isbn(size - 1), "title 1"};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journal) {
+            service.closeJournal();
+        }
+        LibraryData.delete(dir);
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Blackhole bh) {
+        int i = cursor++ % size;
+        Media m = service.findByIsbn(LibraryData.isbn(i));
+        String user = LibraryData.username(i);
+        bh.consume(service.borrow(m, user));
+        bh.consume(service.returnMedia(m, user));
+    }
+
+    @Benchmark
+    public List<Media> searchMedia() {
+        return service.searchMedia(keywords[cursor++ & 3]);
+    }
+
+    @Benchmark
+    public Media findByIsbn() {
+        return service.findByIsbn(LibraryData.isbn(cursor++ % size));
+    }
+}
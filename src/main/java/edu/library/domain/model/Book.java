@@ -2,6 +2,9 @@ package edu.library.domain.model;
 
 public class Book extends Media {
 
+    protected Book() {
+    }
+
     public Book(String title, String author, String isbn) {
         super(title, author, isbn, 1);
     }
@@ -2,24 +2,26 @@ package edu.library.domain.model;
 
 import java.time.LocalDate;
 
+// التواريخ مخزنة كـepoch days والأسماء مشتركة من Symbols، عشان ملايين السجلات ما تعبي الـheap
 public class BorrowRecord {
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final byte RETURNED = 1;
+
     private final String username;
     private final String isbn;
-    private final LocalDate dueDate;
-    private boolean returned;
-    private LocalDate returnDate;
+    private final int dueDay;
+    private int returnDay;
+    private byte flags;
 
     public BorrowRecord(String username, String isbn, LocalDate dueDate, boolean returned, LocalDate returnDate) {
-        this.username = username;
-        this.isbn = isbn;
-        this.dueDate = dueDate;
-        this.returned = returned;
-        this.returnDate = returnDate;
+        this.username = Symbols.intern(username);
+        this.isbn = Symbols.intern(isbn);
+        this.dueDay = toDay(dueDate);
+        this.returnDay = toDay(returnDate);
+        this.flags = returned ? RETURNED : 0;
     }
     public BorrowRecord(String isbn, String username, LocalDate dueDate) {
-        this.isbn = isbn;
-        this.username = username;
-        this.dueDate = dueDate;
+        this(username, isbn, dueDate, false, null);
     }
 
     public String getUsername() {
@@ -31,22 +33,47 @@ public class BorrowRecord {
     }
 
     public LocalDate getDueDate() {
-        return dueDate;
+        return toDate(dueDay);
     }
 
     public boolean isReturned() {
-        return returned;
+        return (flags & RETURNED) != 0;
     }
 
     public LocalDate getReturnDate() {
-        return returnDate;
+        return toDate(returnDay);
     }
 
     public void markReturned(LocalDate returnDate) {
-        this.returned = true;
-        this.returnDate = returnDate;
+        this.flags |= RETURNED;
+        this.returnDay = toDay(returnDate);
+    }
+
+    public boolean hasDueDate() {
+        return dueDay != NO_DATE;
+    }
+
+    // Only meaningful when hasDueDate() is true. Lets hot loops compare dates without a LocalDate.
+    public int getDueEpochDay() {
+        return dueDay;
     }
 
+    public boolean isDueOn(LocalDate date) {
+        return dueDay == toDay(date);
+    }
 
+    /** Days past due on {@code todayEpochDay}; 0 when returned, not yet due or without a due date. */
+    public int overdueDays(long todayEpochDay) {
+        if (isReturned() || dueDay == NO_DATE) return 0;
+        long days = todayEpochDay - dueDay;
+        return days > 0 ? (int) days : 0;
+    }
 
-}
\ No newline at end of file
+    private static int toDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    private static LocalDate toDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+}
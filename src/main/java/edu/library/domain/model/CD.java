@@ -2,6 +2,9 @@ package edu.library.domain.model;
 
 public class CD extends Media {
 
+    protected CD() {
+    }
+
     public CD(String title, String author, String isbn) {
         super(title, author, isbn, 1);
     }
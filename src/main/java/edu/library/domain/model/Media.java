@@ -1,14 +1,35 @@
 package edu.library.domain.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 public abstract class Media {
+    private static final VarHandle AVAILABLE;
+
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(Media.class, "availableCopies", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String title;
     private String author;
     private String isbn;
-    private int totalCopies;
-    private int availableCopies;
-    private LocalDate dueDate;
+    private volatile int totalCopies;
+    // compare-and-set عشان استعارتين بنفس اللحظة ما ياخذوا آخر نسخة مع بعض
+    private volatile int availableCopies;
+    private volatile LocalDate dueDate;
+    // بينادى لما العنصر يصير متاح أو تخلص آخر نسخة (MediaService بيستخدمه لفهرس المتاح)
+    private volatile Consumer<Media> availabilityListener;
+
+    // للصفوف اللي حقولها بمكان ثاني (ColumnarCatalog): بيعملوا override للـgetters والـhooks تحت
+    protected Media() {
+    }
 
     public Media(String title, String author, String isbn, int quantity) {
         this.title = title;
@@ -42,47 +63,119 @@ public abstract class Media {
     public String getAuthor() { return author; }
     public String getIsbn() { return isbn; }
 
-    public int getTotalCopies() { return totalCopies; }
+    public int getTotalCopies() { return readTotal(); }
 
     public void setTotalCopies(int totalCopies) {
-        this.totalCopies = Math.max(0, totalCopies);
-        if (availableCopies > this.totalCopies) {
-            availableCopies = this.totalCopies;
-        }
+        int total = Math.max(0, totalCopies);
+        writeTotal(total);
+        int before = getAndUpdateAvailable(current -> Math.min(current, total));
+        availabilityChanged(before, Math.min(before, total));
     }
 
-    public int getAvailableCopies() { return availableCopies; }
+    public int getAvailableCopies() { return readAvailable(); }
 
     public void setAvailableCopies(int availableCopies) {
-        this.availableCopies = Math.max(0, Math.min(availableCopies, totalCopies));
+        int after = Math.max(0, Math.min(availableCopies, readTotal()));
+        availabilityChanged(getAndUpdateAvailable(current -> after), after);
     }
 
     public void setAvailable(boolean available) {
-        if (available) {
-            this.availableCopies = this.totalCopies;
-        } else {
-            this.availableCopies = 0;
-        }
+        int after = available ? readTotal() : 0;
+        availabilityChanged(getAndUpdateAvailable(current -> after), after);
     }
 
 
     public boolean isAvailable() {
-        return availableCopies > 0;
+        return readAvailable() > 0;
     }
 
     public void borrowOne() {
-        if (availableCopies > 0) availableCopies--;
+        tryBorrowOne();
     }
 
     public void returnOne() {
-        if (availableCopies < totalCopies) availableCopies++;
+        tryReturnOne();
+    }
+
+    // compare-and-set: بترجع false لو ما ضل ولا نسخة
+    public boolean tryBorrowOne() {
+        int current;
+        do {
+            current = readAvailable();
+            if (current <= 0) return false;
+        } while (!casAvailable(current, current - 1));
+        availabilityChanged(current, current - 1);
+        return true;
+    }
+
+    public boolean tryReturnOne() {
+        int current;
+        do {
+            current = readAvailable();
+            if (current >= readTotal()) return false;
+        } while (!casAvailable(current, current + 1));
+        availabilityChanged(current, current + 1);
+        return true;
+    }
+
+    // نسخ جديدة وصلت (مثلاً من import): الكل بيزيد قبل المتاح عشان المتاح ما يعدّي الكل
+    public void addCopies(int total, int available) {
+        if (total <= 0) return;
+        writeTotal(readTotal() + total);
+        int added = Math.max(0, Math.min(available, total));
+        int before = getAndUpdateAvailable(current -> current + added);
+        availabilityChanged(before, before + added);
+    }
+
+    // -----------------------------
+    //        COPY COUNTERS
+    // -----------------------------
+    // كل منطق النسخ فوق بيمر من هون، فصف بيخزّن العدادات برّا الـobject بيغيّر هدول الأربعة بس
+
+    protected int readAvailable() {
+        return availableCopies;
+    }
+
+    protected boolean casAvailable(int expected, int updated) {
+        return AVAILABLE.compareAndSet(this, expected, updated);
+    }
+
+    protected int readTotal() {
+        return totalCopies;
+    }
+
+    protected void writeTotal(int total) {
+        this.totalCopies = total;
+    }
+
+    private int getAndUpdateAvailable(IntUnaryOperator update) {
+        int current;
+        do {
+            current = readAvailable();
+        } while (!casAvailable(current, update.applyAsInt(current)));
+        return current;
+    }
+
+    public void setAvailabilityListener(Consumer<Media> listener) {
+        this.availabilityListener = listener;
+    }
+
+    public Consumer<Media> getAvailabilityListener() {
+        return availabilityListener;
+    }
+
+    private void availabilityChanged(int before, int after) {
+        if ((before > 0) == (after > 0)) return;
+        Consumer<Media> listener = availabilityListener;
+        if (listener != null) listener.accept(this);
     }
 
     public LocalDate getDueDate() { return dueDate; }
     public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
 
     public boolean isOverdue() {
-        return !isAvailable() && dueDate != null && LocalDate.now().isAfter(dueDate);
+        LocalDate due = getDueDate();
+        return !isAvailable() && due != null && LocalDate.now().isAfter(due);
     }
 
     public abstract int getBorrowDurationDays();
@@ -96,6 +189,6 @@ public abstract class Media {
     @Override
     public String toString() {
         return String.format("Title: %s | Author: %s | ISBN: %s | Available: %d/%d",
-                title, author, isbn, availableCopies, totalCopies);
+                getTitle(), getAuthor(), getIsbn(), readAvailable(), readTotal());
     }
 }
\ No newline at end of file
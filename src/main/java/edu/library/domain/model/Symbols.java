@@ -0,0 +1,27 @@
+package edu.library.domain.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// جدول أسماء مشترك: كل username/ISBN بينخزن مرة وحدة. المفاتيح weak، فالاسم اللي ما ضل
+// سجل ماسكه (بعد الأرشفة مثلاً) بينمسح من الجدول مع الـGC بدل ما يضل للأبد
+final class Symbols {
+
+    private static final Map<String, WeakReference<String>> POOL = new WeakHashMap<>();
+
+    private Symbols() {
+    }
+
+    static String intern(String value) {
+        if (value == null) return null;
+
+        synchronized (POOL) {
+            WeakReference<String> ref = POOL.get(value);
+            String shared = ref == null ? null : ref.get();
+            if (shared != null) return shared;
+            POOL.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+}
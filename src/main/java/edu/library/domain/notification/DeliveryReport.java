@@ -0,0 +1,85 @@
+package edu.library.domain.notification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Completion handle for one {@link EmailDeliveryQueue#submit(List)} call. A message counts
+ * as failed only after all its retries are used up.
+ */
+public class DeliveryReport {
+
+    private final int total;
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final List<EmailMessage> failedMessages = Collections.synchronizedList(new ArrayList<>());
+    private final CompletableFuture<DeliveryReport> completion = new CompletableFuture<>();
+
+    DeliveryReport(int total) {
+        this.total = total;
+        if (total == 0) {
+            completion.complete(this);
+        }
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSentCount() {
+        return sent.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    public List<EmailMessage> getFailedMessages() {
+        synchronized (failedMessages) {
+            return new ArrayList<>(failedMessages);
+        }
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    public CompletableFuture<DeliveryReport> toFuture() {
+        return completion;
+    }
+
+    // true لو خلصت كل الرسائل قبل ما يخلص الوقت
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    void recordSent() {
+        sent.incrementAndGet();
+        completeIfFinished();
+    }
+
+    void recordFailed(EmailMessage message) {
+        failedMessages.add(message);
+        failed.incrementAndGet();
+        completeIfFinished();
+    }
+
+    private void completeIfFinished() {
+        if (sent.get() + failed.get() >= total) {
+            completion.complete(this);
+        }
+    }
+}
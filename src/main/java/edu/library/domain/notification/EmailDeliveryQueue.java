@@ -0,0 +1,185 @@
+package edu.library.domain.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of outgoing emails drained by a fixed pool of worker threads. Each worker
+ * takes up to {@code batchSize} messages at once and hands them to
+ * {@link EmailServer#sendBatch(List)}, so an SMTP server can reuse one connection per batch.
+ * Failed recipients are re-queued with exponential backoff until {@code maxAttempts}.
+ */
+public class EmailDeliveryQueue implements AutoCloseable {
+
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BACKOFF_MILLIS = 500;
+
+    private record Delivery(EmailMessage message, int attempt, DeliveryReport report) {
+    }
+
+    private final EmailServer server;
+    private final BlockingQueue<Delivery> queue;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retries;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private final Object idle = new Object();
+    private int inFlight;
+    private volatile boolean closed;
+
+    public EmailDeliveryQueue(EmailServer server) {
+        this(server, DEFAULT_WORKERS, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF_MILLIS);
+    }
+
+    public EmailDeliveryQueue(EmailServer server, int workers, int capacity, int batchSize,
+                              int maxAttempts, long backoffMillis) {
+        if (server == null) {
+            throw new IllegalArgumentException("Email server is required");
+        }
+        this.server = server;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(0, backoffMillis);
+
+        int poolSize = Math.max(1, workers);
+        this.workers = Executors.newFixedThreadPool(poolSize, daemon("email-delivery-"));
+        this.retries = Executors.newSingleThreadScheduledExecutor(daemon("email-retry-"));
+        for (int i = 0; i < poolSize; i++) {
+            this.workers.submit(this::drain);
+        }
+    }
+
+    /**
+     * Queues the messages and returns immediately with their report. Blocks only while the
+     * queue is full.
+     */
+    public DeliveryReport submit(List<EmailMessage> messages) {
+        if (closed) {
+            throw new IllegalStateException("Email delivery queue is closed");
+        }
+        List<EmailMessage> valid = new ArrayList<>();
+        if (messages != null) {
+            for (EmailMessage m : messages) {
+                if (m != null && m.to() != null && !m.to().isBlank() && m.message() != null) {
+                    valid.add(m);
+                }
+            }
+        }
+
+        DeliveryReport report = new DeliveryReport(valid.size());
+        synchronized (idle) {
+            inFlight += valid.size();
+        }
+        for (EmailMessage m : valid) {
+            enqueue(new Delivery(m, 1, report));
+        }
+        return report;
+    }
+
+    // بستنى كل الرسائل (مع الـretries) تخلص وبعدين بسكّر الـthreads
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (idle) {
+            while (inFlight > 0) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        retries.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void drain() {
+        List<Delivery> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    private void deliver(List<Delivery> batch) {
+        List<EmailMessage> messages = new ArrayList<>(batch.size());
+        for (Delivery d : batch) {
+            messages.add(d.message());
+        }
+
+        List<EmailMessage> failed;
+        try {
+            failed = new ArrayList<>(server.sendBatch(messages));
+        } catch (RuntimeException e) {
+            System.out.println("Error sending email batch: " + e.getMessage());
+            failed = messages;
+        }
+
+        for (Delivery d : batch) {
+            // remove بيشيل نسخة وحدة بس، فلو نفس الرسالة مكررة بالدفعة بتنحسب صح
+            if (!failed.remove(d.message())) {
+                d.report().recordSent();
+                finished();
+            } else if (d.attempt() < maxAttempts) {
+                Delivery retry = new Delivery(d.message(), d.attempt() + 1, d.report());
+                retries.schedule(() -> enqueue(retry), backoff(d.attempt()), TimeUnit.MILLISECONDS);
+            } else {
+                d.report().recordFailed(d.message());
+                finished();
+            }
+        }
+    }
+
+    private long backoff(int attempt) {
+        return backoffMillis << Math.min(attempt - 1, 16);
+    }
+
+    private void enqueue(Delivery delivery) {
+        try {
+            queue.put(delivery);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delivery.report().recordFailed(delivery.message());
+            finished();
+        }
+    }
+
+    private void finished() {
+        synchronized (idle) {
+            inFlight--;
+            if (inFlight == 0) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
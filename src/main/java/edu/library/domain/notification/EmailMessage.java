@@ -0,0 +1,4 @@
+package edu.library.domain.notification;
+
+public record EmailMessage(String to, String message) {
+}
@@ -1,6 +1,22 @@
 package edu.library.domain.notification;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface EmailServer {
 
     void sendEmail(String to, String message);
+
+    // يرجع الرسائل اللي فشلت عشان اللي نادى يقرر يعيد المحاولة
+    default List<EmailMessage> sendBatch(List<EmailMessage> messages) {
+        List<EmailMessage> failed = new ArrayList<>();
+        for (EmailMessage m : messages) {
+            try {
+                sendEmail(m.to(), m.message());
+            } catch (RuntimeException e) {
+                failed.add(m);
+            }
+        }
+        return failed;
+    }
 }
@@ -8,6 +8,8 @@ import jakarta.mail.Session;
 import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -19,6 +21,7 @@ public class SmtpEmailServer implements EmailServer {
     private final String username;
     private final String password;
     private final String fromAddress;
+    private Session session;
 
     public String getHost() { return host; }
     public String getUsername() { return username; }
@@ -49,29 +52,93 @@ public class SmtpEmailServer implements EmailServer {
             System.out.println("Email configuration is incomplete; skipping send.");
             return;
         }
-        Properties props = new Properties();
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", Boolean.toString(startTls));
-        props.put("mail.smtp.host", host);
-        props.put("mail.smtp.port", Integer.toString(port));
-
-        Session session = Session.getInstance(props, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(username, password);
+        try {
+            Transport.send(buildMessage(session(), to, message));
+        } catch (MessagingException e) {
+            throw new RuntimeException("Failed to send email", e);
+        }
+    }
+
+    // اتصال SMTP واحد للدفعة كلها بدل connect/close لكل رسالة
+    @Override
+    public List<EmailMessage> sendBatch(List<EmailMessage> messages) {
+        List<EmailMessage> failed = new ArrayList<>();
+        if (messages == null || messages.isEmpty()) {
+            return failed;
+        }
+        if (!isConfigured()) {
+            System.out.println("Email configuration is incomplete; skipping send.");
+            return failed;
+        }
+
+        // بس فشل الاتصال بيفشّل الدفعة كلها؛ الرسائل اللي انبعتت ما بترجع للطابور
+        Session current = session();
+        Transport transport = null;
+        try {
+            transport = current.getTransport("smtp");
+            transport.connect(host, port, username, password);
+        } catch (MessagingException e) {
+            System.out.println("Error sending email batch: " + e.getMessage());
+            close(transport);
+            for (EmailMessage m : messages) {
+                if (m != null) failed.add(m);
             }
-        });
+            return failed;
+        }
 
         try {
-            Message mimeMessage = new MimeMessage(session);
-            mimeMessage.setFrom(new InternetAddress(fromAddress));
-            mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
-            mimeMessage.setSubject("Overdue Book Reminder");
-            mimeMessage.setText(message);
-            Transport.send(mimeMessage);
+            for (EmailMessage m : messages) {
+                if (m == null || m.to() == null || m.to().isBlank() || m.message() == null) {
+                    continue;
+                }
+                try {
+                    Message mimeMessage = buildMessage(current, m.to(), m.message());
+                    transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                } catch (MessagingException e) {
+                    failed.add(m);
+                }
+            }
+        } finally {
+            close(transport);
+        }
+        return failed;
+    }
+
+    // خطأ بالإغلاق ما بيعني إنه الرسائل ما وصلت، فبنسجّله بس
+    private static void close(Transport transport) {
+        if (transport == null) return;
+        try {
+            transport.close();
         } catch (MessagingException e) {
-            throw new RuntimeException("Failed to send email", e);
+            System.out.println("Error closing email transport: " + e.getMessage());
+        }
+    }
+
+    private Message buildMessage(Session session, String to, String message) throws MessagingException {
+        Message mimeMessage = new MimeMessage(session);
+        mimeMessage.setFrom(new InternetAddress(fromAddress));
+        mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        mimeMessage.setSubject("Overdue Book Reminder");
+        mimeMessage.setText(message);
+        return mimeMessage;
+    }
+
+    private synchronized Session session() {
+        if (session == null) {
+            Properties props = new Properties();
+            props.put("mail.smtp.auth", "true");
+            props.put("mail.smtp.starttls.enable", Boolean.toString(startTls));
+            props.put("mail.smtp.host", host);
+            props.put("mail.smtp.port", Integer.toString(port));
+
+            session = Session.getInstance(props, new Authenticator() {
+                @Override
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(username, password);
+                }
+            });
         }
+        return session;
     }
 
     private boolean isConfigured() {
@@ -5,6 +5,7 @@ import edu.library.domain.model.CD;
 import edu.library.domain.model.Media;
 import edu.library.domain.model.Roles;
 import edu.library.service.AuthService;
+import edu.library.service.MediaPage;
 import edu.library.service.MediaService;
 import edu.library.service.ReminderService;
 
@@ -84,9 +85,7 @@ public class Admin {
 
             case 3: // Display All Books
                 System.out.println("All Books:");
-                for (Media m : service.getAllMedia()) {
-                    if (m instanceof Book) System.out.println(m.getTitle());
-                }
+                displayTitles(input, service, Book.class);
                 return 0;
 
             case 4: // Add Member
@@ -228,9 +227,7 @@ public class Admin {
 
             case 13: // Display all CDs
                 System.out.println("All CDs:");
-                for (Media m : service.getAllMedia()) {
-                    if (m instanceof CD) System.out.println(m.getTitle());
-                }
+                displayTitles(input, service, CD.class);
                 return 0;
 
             default:
@@ -238,4 +235,13 @@ public class Admin {
                 return 0;
         }
     }
+
+    private static void displayTitles(Scanner input, MediaService service, Class<? extends Media> type) {
+        String cursor = null;
+        do {
+            MediaPage page = service.listMedia(type, MediaPage.Sort.TITLE, cursor, Member.PAGE_SIZE);
+            for (Media m : page.getItems()) System.out.println(m.getTitle());
+            cursor = page.getNextCursor();
+        } while (cursor != null && Member.morePages(input));
+    }
 }
@@ -6,13 +6,17 @@ import edu.library.domain.model.Media;
 import edu.library.domain.model.Roles;
 import edu.library.domain.model.BorrowRecord;
 import edu.library.service.AuthService;
+import edu.library.service.BorrowHistoryFile;
+import edu.library.service.BorrowRecordService;
 import edu.library.service.MediaService;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
 
 public class Librarian {
 
@@ -129,31 +133,83 @@ public class Librarian {
         }
     }
 
+    // ترتيب العرض حسب تاريخ الاستحقاق (مش ترتيب السطور بالملف) لما يكون الـhistory مبني؛
+    // لو مش مبني (أرشيف بدون index) بنرجع للترتيب القديم: الأرشيف أول وبعده السجلات بترتيب الملف
     static void displayBorrowRecords(MediaService service) {
-        List<BorrowRecord> records = service.getBorrowRecordService().getAllRecords();
-        if (records.isEmpty()) {
-            System.out.println("No borrow records available.");
+        BorrowRecordService borrowRecordService = service.getBorrowRecordService();
+        BorrowHistoryFile history = borrowRecordService.openHistory();
+        if (history != null) {
+            displayBorrowHistory(history, BorrowHistoryFile.Filter.ALL);
             return;
         }
 
+        List<BorrowRecord> records = borrowRecordService.getAllRecords();
+
+        boolean anyRecord = false;
         boolean anyOverdue = false;
-        System.out.println("Borrow Records:");
-        for (BorrowRecord record : records) {
-            boolean overdue = !record.isReturned() && record.getDueDate() != null && LocalDate.now().isAfter(record.getDueDate());
-            System.out.printf("User: %s | ISBN: %s | Due: %s | Returned: %s | ReturnDate: %s%n",
-                    record.getUsername(), record.getIsbn(), record.getDueDate(), record.isReturned(), record.getReturnDate());
-            if (overdue) {
-                anyOverdue = true;
-                long daysOverdue = ChronoUnit.DAYS.between(record.getDueDate(), LocalDate.now());
-                System.out.println("Overdue by " + daysOverdue + " day(s). Loans beyond 28 days trigger fines.");
+
+        // archived history is streamed from disk one line at a time, never loaded as a list
+        try (Stream<BorrowRecord> archived = borrowRecordService.streamArchivedRecords()) {
+            Iterator<BorrowRecord> it = archived.iterator();
+            while (it.hasNext()) {
+                if (!anyRecord) System.out.println("Borrow Records:");
+                anyRecord = true;
+                anyOverdue |= printBorrowRecord(it.next());
             }
         }
 
+        if (!anyRecord && records.isEmpty()) {
+            System.out.println("No borrow records available.");
+            return;
+        }
+
+        if (!anyRecord) System.out.println("Borrow Records:");
+        for (BorrowRecord record : records) {
+            anyOverdue |= printBorrowRecord(record);
+        }
+
         if (!anyOverdue) {
             System.out.println("No overdue items detected (all within 28-day window).");
         }
     }
 
+    // history is read row by row from the mapped file (oldest due date first), nothing is copied into a list
+    static void displayBorrowHistory(BorrowHistoryFile history, BorrowHistoryFile.Filter filter) {
+        BorrowHistoryFile.Cursor row = history.cursor(filter);
+        if (!row.next()) {
+            System.out.println("No borrow records available.");
+            return;
+        }
+
+        System.out.println("Borrow Records:");
+        boolean anyOverdue = false;
+        do {
+            anyOverdue |= printBorrowRecord(row.getUsername(), row.getIsbn(), row.getDueDate(),
+                    row.isReturned(), row.getReturnDate());
+        } while (row.next());
+
+        if (!anyOverdue) {
+            System.out.println("No overdue items detected (all within 28-day window).");
+        }
+    }
+
+    private static boolean printBorrowRecord(BorrowRecord record) {
+        return printBorrowRecord(record.getUsername(), record.getIsbn(), record.getDueDate(),
+                record.isReturned(), record.getReturnDate());
+    }
+
+    private static boolean printBorrowRecord(String username, String isbn, LocalDate dueDate,
+                                             boolean returned, LocalDate returnDate) {
+        boolean overdue = !returned && dueDate != null && LocalDate.now().isAfter(dueDate);
+        System.out.printf("User: %s | ISBN: %s | Due: %s | Returned: %s | ReturnDate: %s%n",
+                username, isbn, dueDate, returned, returnDate);
+        if (overdue) {
+            long daysOverdue = ChronoUnit.DAYS.between(dueDate, LocalDate.now());
+            System.out.println("Overdue by " + daysOverdue + " day(s). Loans beyond 28 days trigger fines.");
+        }
+        return overdue;
+    }
+
     static void displayFineBalances(MediaService service) {
         Map<String, Integer> fines = service.getAllFines();
         if (fines.isEmpty()) {
@@ -1,12 +1,11 @@
 /**
 package edu.library.presentation;
-import edu.library.domain.fine.FineCalculator;
 import edu.library.domain.model.Book;
 import edu.library.service.MediaService;
 import edu.library.domain.model.Roles;
 import edu.library.service.AuthService;
 import edu.library.service.BorrowRecordService;
-import edu.library.service.FineService;
+import edu.library.service.LibraryBootstrap;
 import edu.library.service.ReminderService;
 import edu.library.domain.notification.EmailNotifier;
 import edu.library.domain.notification.SmtpEmailServer;
@@ -15,21 +14,18 @@ import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
-        FineService fineService = new FineService();
-        BorrowRecordService borrowRecordService = new BorrowRecordService();
-
-        MediaService service = new MediaService(
-                "media.txt",
-                borrowRecordService,
-                fineService,
-                new SystemTimeProvider(),
-                new FineCalculator()
-        );
-
-        service.updateFinesOnStartup();
-
-        AuthService auth = new AuthService(fineService);;
-        ReminderService reminderService = new ReminderService(borrowRecordService, auth, new SystemTimeProvider());
+        // الأربع ملفات بيتحمّلوا مع بعض، وupdateFinesOnStartup بيستنى media + records
+        // لو library.snapshot أحدث من الملفات النصية، بنحمّل منه بدل ما نعيد parse
+        LibraryBootstrap bootstrap = new LibraryBootstrap()
+                .enableSnapshots("library.snapshot", 5 * 60 * 1000)
+                .start();
+        System.out.println(bootstrap.timingReport());
+
+        BorrowRecordService borrowRecordService = bootstrap.getBorrowRecordService();
+        MediaService service = bootstrap.getMediaService();
+        AuthService auth = bootstrap.getAuthService();
+        ReminderService reminderService = new ReminderService(borrowRecordService, auth, new SystemTimeProvider(),
+                service.getOverdueLedger());
         reminderService.addObserver(new EmailNotifier(new SmtpEmailServer()));
         Scanner input = new Scanner(System.in);
 
@@ -66,14 +62,7 @@ public class Main {
                 String password = input.nextLine().trim();
                 String role = "MEMBER";
 
-                boolean exists = false;
-                for (Roles r : auth.getUsers()) {
-                    if (r.getUsername().equalsIgnoreCase(username)) {
-                        exists = true;
-                        break;
-                    }
-                }
-                if (exists) {
+                if (auth.existsIgnoreCase(username)) {
                     System.out.println("Username already exists. Choose another.");
                 } else {
                     auth.addUser(username, password, role, email);
@@ -8,13 +8,16 @@ import java.time.temporal.ChronoUnit;
 import edu.library.domain.model.Book;
 import edu.library.domain.model.CD;
 import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.model.Media;
 import edu.library.domain.model.Roles;
 import edu.library.service.AuthService;
+import edu.library.service.MediaPage;
 import edu.library.service.MediaService;
 
 public class Member {
 
     public static String fineFilePath = "fines.txt";
+    static final int PAGE_SIZE = 20;
 
     public static int handle(Scanner input, MediaService service, AuthService auth, Roles user) {
         System.out.println("\n--- Member Session: " + user.getUsername() + " (" + user.getRoleName() + ") | " + user.getEmail() + " ---");
@@ -46,13 +49,13 @@ public class Member {
             case 1 -> searchBook(input, service);
             case 2 -> borrowBook(input, service, user);
             case 3 -> returnBook(input, service, user);
-            case 4 -> displayAllBooks(service);
+            case 4 -> displayAllBooks(input, service);
             case 5 -> payFines(input, service, user);
             case 6 -> viewRemainingBooks(service, user);
             case 7 -> searchCD(input, service);
             case 8 -> borrowCD(input, service, user);
             case 9 -> returnCD(input, service, user);
-            case 10 -> displayAllCDs(service);
+            case 10 -> displayAllCDs(input, service);
             case 11 -> viewRemainingCDs(service, user);
             case 12 -> {
                 if (auth.logout()) {
@@ -136,8 +139,24 @@ public class Member {
         return 0;
     }
 
-    private static void displayAllBooks(MediaService service) {
-        service.getBooks().forEach(System.out::println);
+    private static void displayAllBooks(Scanner input, MediaService service) {
+        displayPaged(input, service, Book.class);
+    }
+
+    // صفحة صفحة بالترتيب حسب العنوان؛ بس الصفحة المطلوبة بتنطبع
+    private static void displayPaged(Scanner input, MediaService service, Class<? extends Media> type) {
+        String cursor = null;
+        do {
+            MediaPage page = service.listMedia(type, MediaPage.Sort.TITLE, cursor, PAGE_SIZE);
+            page.getItems().forEach(System.out::println);
+            cursor = page.getNextCursor();
+        } while (cursor != null && morePages(input));
+    }
+
+    static boolean morePages(Scanner input) {
+        System.out.print("Press Enter for more, or q to stop: ");
+        if (!input.hasNextLine()) return false;
+        return !input.nextLine().trim().equalsIgnoreCase("q");
     }
 
     private static void payFines(Scanner input, MediaService service, Roles user) {
@@ -282,8 +301,8 @@ public class Member {
         return 0;
     }
 
-    private static void displayAllCDs(MediaService service) {
-        service.getCDs().forEach(System.out::println);
+    private static void displayAllCDs(Scanner input, MediaService service) {
+        displayPaged(input, service, CD.class);
     }
 
     private static void viewRemainingCDs(MediaService service, Roles user) {
@@ -4,12 +4,18 @@ import edu.library.domain.model.Roles;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class AuthService {
 
     private final String filePath;
     private final List<Roles> users = new ArrayList<>();
+    // lower-cased username -> users with that name, in file order
+    private final Map<String, List<Roles>> usersByName = new HashMap<>();
+    private volatile List<Roles> usersSnapshot;
     private final FineService fineService;
     private Roles currentUser;
 
@@ -26,9 +32,14 @@ public class AuthService {
     }
 
     public AuthService(String filePath, FineService fineService) {
+        this(filePath, fineService, true);
+    }
+
+    // load=false: LibraryBootstrap بيعمل loadUsersFromFile() على thread لحاله
+    AuthService(String filePath, FineService fineService, boolean load) {
         this.filePath = filePath;
         this.fineService = fineService == null ? new FineService() : fineService;
-        loadUsersFromFile();
+        if (load) loadUsersFromFile();
     }
 
 
@@ -36,7 +47,7 @@ public class AuthService {
     public Roles login(String username, String password) {
         if (username == null || password == null) return null;
 
-        for (Roles user : users) {
+        for (Roles user : usersByName.getOrDefault(nameKey(username), List.of())) {
             if (user.getUsername().equals(username) &&
                     user.getPassword().equals(password)) {
 
@@ -57,7 +68,7 @@ public class AuthService {
         if (email.trim().isEmpty()) return null;
 
         Roles newUser = new Roles(username, password, roleName, email.trim());
-        users.add(newUser);
+        track(newUser);
         saveUsersToFile();
         return newUser;
     }
@@ -71,14 +82,14 @@ public class AuthService {
     public boolean removeUser(String username) {
         if (username == null) return false;
 
-        Roles toRemove = users.stream()
-                .filter(u -> u.getUsername().equalsIgnoreCase(username))
-                .findFirst()
-                .orElse(null);
+        List<Roles> matches = usersByName.get(nameKey(username));
+        if (matches == null || matches.isEmpty()) return false;
 
-        if (toRemove == null) return false;
+        Roles toRemove = matches.remove(0);
+        if (matches.isEmpty()) usersByName.remove(nameKey(username));
 
         users.remove(toRemove);
+        usersSnapshot = null;
         saveUsersToFile();
 
         if (currentUser != null && currentUser.getUsername().equalsIgnoreCase(username)) {
@@ -110,10 +121,12 @@ public class AuthService {
 
 
     public boolean userExists(String username) {
-        if (username == null) return false;
+        return existsIgnoreCase(username);
+    }
 
-        return users.stream()
-                .anyMatch(u -> u.getUsername().equalsIgnoreCase(username));
+    public boolean existsIgnoreCase(String username) {
+        if (username == null) return false;
+        return usersByName.containsKey(nameKey(username));
     }
 
     public boolean logout() {
@@ -131,7 +144,17 @@ public class AuthService {
     }
 
     public List<Roles> getUsers() {
-        return new ArrayList<>(users);
+        return new SnapshotList<>(snapshotUsers());
+    }
+
+    // read-only، نفس القائمة لكل القرّاء لحد ما ينضاف أو ينحذف مستخدم
+    public List<Roles> snapshotUsers() {
+        List<Roles> snapshot = usersSnapshot;
+        if (snapshot == null) {
+            snapshot = List.copyOf(users);
+            usersSnapshot = snapshot;
+        }
+        return snapshot;
     }
 
 
@@ -139,11 +162,12 @@ public class AuthService {
     private void persistOutstandingFines(Roles user) {
         if (fineService == null) return;
         fineService.storeBalanceOnLogin(user.getUsername());
-        fineService.saveBalances();
     }
 
-    private void loadUsersFromFile() {
+    void loadUsersFromFile() {
         users.clear();
+        usersByName.clear();
+        usersSnapshot = null;
         File file = new File(filePath);
 
         if (!file.exists()) {
@@ -170,7 +194,7 @@ public class AuthService {
                 String roleName = p[2].trim();
                 String email = p.length > 3 ? p[3].trim() : "";
 
-                users.add(new Roles(username, password, roleName, email));
+                track(new Roles(username, password, roleName, email));
             }
 
         } catch (IOException e) {
@@ -179,6 +203,16 @@ public class AuthService {
     }
 
 
+    void restore(List<Roles> saved) {
+        users.clear();
+        usersByName.clear();
+        usersSnapshot = null;
+        for (Roles user : saved) {
+            track(user);
+        }
+    }
+
+
     void saveUsersToFile() {
         try (BufferedWriter w = new BufferedWriter(new FileWriter(filePath))) {
             for (Roles u : users) {
@@ -193,6 +227,16 @@ public class AuthService {
         }
     }
 
+    private void track(Roles user) {
+        users.add(user);
+        usersSnapshot = null;
+        usersByName.computeIfAbsent(nameKey(user.getUsername()), k -> new ArrayList<>(1)).add(user);
+    }
+
+    private static String nameKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
     private static String resolveDefault(String filename) {
         return new File(System.getProperty("user.dir", ""), filename).getPath();
     }
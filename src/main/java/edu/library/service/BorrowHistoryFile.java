@@ -0,0 +1,246 @@
+package edu.library.service;
+
+import edu.library.domain.model.BorrowRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * The whole borrow history (archive plus hot records) for paging and filtering. Each archive
+ * segment is a memory-mapped {@link HistorySegment} that is built once and reused until the
+ * segment grows. The in-memory hot records are sorted by due date when the view is created and
+ * merged with the segments while a {@link Cursor} walks, so a new loan or return never rewrites
+ * the mapped files. Only the rows a caller asks for as {@link BorrowRecord}s end up on the heap.
+ *
+ * <p>Rows come out ordered by due date (loans without one first), not in the order they were
+ * written to records.txt; rows with the same due date keep archive-then-hot file order.
+ */
+public final class BorrowHistoryFile {
+
+    /** Every field is optional (null = no restriction); the due date range is inclusive. */
+    public record Filter(String username, String isbn, LocalDate dueFrom, LocalDate dueTo) {
+        public static final Filter ALL = new Filter(null, null, null, null);
+
+        public static Filter byUser(String username) {
+            return new Filter(username, null, null, null);
+        }
+
+        public static Filter byIsbn(String isbn) {
+            return new Filter(null, isbn, null, null);
+        }
+
+        public static Filter dueBetween(LocalDate from, LocalDate to) {
+            return new Filter(null, null, from, to);
+        }
+    }
+
+    // بالترتيب من الأقدم؛ لو نفس التاريخ الأقدم بيطلع أول
+    private final List<HistorySegment> segments;
+    private final BorrowRecord[] hot;
+    private final int size;
+
+    BorrowHistoryFile(List<HistorySegment> segments, List<BorrowRecord> hotRecords) {
+        this.segments = List.copyOf(segments);
+        this.hot = hotRecords.toArray(new BorrowRecord[0]);
+        // stable sort، فسجلين بنفس التاريخ بيضلوا بترتيب إضافتهم
+        Arrays.sort(hot, Comparator.comparingInt(HistorySegment::dueDay));
+        int total = hot.length;
+        for (HistorySegment s : segments) total += s.size();
+        this.size = total;
+    }
+
+    /** Maps a single history file written by this class, without hot records. */
+    public static BorrowHistoryFile open(Path file) throws IOException {
+        return new BorrowHistoryFile(List.of(HistorySegment.open(file)), List.of());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Cursor cursor(Filter filter) {
+        return cursor(filter, 0, Integer.MAX_VALUE);
+    }
+
+    /** Cursor over the matches of {@code filter}, skipping {@code offset} and stopping after {@code limit}. */
+    public Cursor cursor(Filter filter, int offset, int limit) {
+        return new Cursor(filter == null ? Filter.ALL : filter, Math.max(0, offset), Math.max(0, limit));
+    }
+
+    public int count(Filter filter) {
+        Cursor c = cursor(filter);
+        int n = 0;
+        while (c.next()) n++;
+        return n;
+    }
+
+    /** One page of matches as records, for callers that keep them; everything else stays mapped. */
+    public List<BorrowRecord> page(Filter filter, int offset, int limit) {
+        Cursor c = cursor(filter, offset, limit);
+        List<BorrowRecord> page = new ArrayList<>(Math.min(Math.max(0, limit), 256));
+        while (c.next()) page.add(c.toRecord());
+        return page;
+    }
+
+    // مصدر واحد بالدمج: segment على mmap أو السجلات الحارة؛ order بيكسر التعادل
+    private abstract static class Source {
+        final int order;
+
+        Source(int order) {
+            this.order = order;
+        }
+
+        abstract boolean next();
+
+        abstract int due();
+
+        abstract String username();
+
+        abstract String isbn();
+
+        abstract LocalDate dueDate();
+
+        abstract LocalDate returnDate();
+
+        abstract boolean returned();
+    }
+
+    private static final class SegmentSource extends Source {
+        private final HistorySegment.Rows rows;
+
+        SegmentSource(int order, HistorySegment.Rows rows) {
+            super(order);
+            this.rows = rows;
+        }
+
+        boolean next() { return rows.next(); }
+        int due() { return rows.dueEpochDay(); }
+        String username() { return rows.username(); }
+        String isbn() { return rows.isbn(); }
+        LocalDate dueDate() { return rows.dueDate(); }
+        LocalDate returnDate() { return rows.returnDate(); }
+        boolean returned() { return rows.returned(); }
+    }
+
+    private final class HotSource extends Source {
+        private final Filter filter;
+        private final int from;
+        private final int to;
+        private int position = -1;
+
+        HotSource(int order, Filter filter) {
+            super(order);
+            this.filter = filter;
+            boolean ranged = filter.dueFrom() != null || filter.dueTo() != null;
+            this.from = filter.dueFrom() == null
+                    ? (ranged ? HistorySegment.NO_DATE + 1 : HistorySegment.NO_DATE)
+                    : HistorySegment.epochDay(filter.dueFrom());
+            this.to = filter.dueTo() == null ? Integer.MAX_VALUE : HistorySegment.epochDay(filter.dueTo());
+        }
+
+        boolean next() {
+            while (++position < hot.length) {
+                BorrowRecord r = hot[position];
+                int due = HistorySegment.dueDay(r);
+                if (due > to) break;
+                if (due < from) continue;
+                if (filter.username() != null && !Objects.equals(filter.username(), r.getUsername())) continue;
+                if (filter.isbn() != null && !Objects.equals(filter.isbn(), r.getIsbn())) continue;
+                return true;
+            }
+            position = hot.length;
+            return false;
+        }
+
+        private BorrowRecord current() { return hot[position]; }
+        int due() { return HistorySegment.dueDay(current()); }
+        String username() { return current().getUsername(); }
+        String isbn() { return current().getIsbn(); }
+        LocalDate dueDate() { return current().getDueDate(); }
+        LocalDate returnDate() { return current().getReturnDate(); }
+        boolean returned() { return current().isReturned(); }
+    }
+
+    /**
+     * Forward-only view over the matching rows of every segment and the hot records, merged by
+     * due date. The getters read the current row; call {@link #next()} first.
+     */
+    public final class Cursor {
+        private final PriorityQueue<Source> pending = new PriorityQueue<>(
+                Comparator.comparingInt(Source::due).thenComparingInt(s -> s.order));
+        private int skip;
+        private int remaining;
+        private Source current;
+
+        private Cursor(Filter filter, int offset, int limit) {
+            this.skip = offset;
+            this.remaining = limit;
+            if (filter.dueFrom() != null && filter.dueTo() != null && filter.dueFrom().isAfter(filter.dueTo())) {
+                return;
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                offer(new SegmentSource(i, segments.get(i).rows(filter)));
+            }
+            offer(new HotSource(segments.size(), filter));
+        }
+
+        private void offer(Source source) {
+            if (source.next()) pending.add(source);
+        }
+
+        public boolean next() {
+            if (current != null) {
+                offer(current);
+                current = null;
+            }
+            while (remaining > 0 && !pending.isEmpty()) {
+                Source head = pending.poll();
+                if (skip > 0) {
+                    skip--;
+                    offer(head);
+                    continue;
+                }
+                remaining--;
+                current = head;
+                return true;
+            }
+            return false;
+        }
+
+        public String getUsername() {
+            return current().username();
+        }
+
+        public String getIsbn() {
+            return current().isbn();
+        }
+
+        public LocalDate getDueDate() {
+            return current().dueDate();
+        }
+
+        public LocalDate getReturnDate() {
+            return current().returnDate();
+        }
+
+        public boolean isReturned() {
+            return current().returned();
+        }
+
+        public BorrowRecord toRecord() {
+            return new BorrowRecord(getUsername(), getIsbn(), getDueDate(), isReturned(), getReturnDate());
+        }
+
+        private Source current() {
+            if (current == null) throw new IllegalStateException("Call next() first");
+            return current;
+        }
+    }
+}
@@ -1,82 +1,297 @@
 package edu.library.service;
 
 import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.time.SystemTimeProvider;
+import edu.library.domain.time.TimeProvider;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class BorrowRecordService {
 
     private final String filePath;
     private final List<BorrowRecord> records = new ArrayList<>();
+    // copy-on-write: null بعد أي تغيير، وبينبنى من جديد أول ما حدا يقرأ
+    private List<BorrowRecord> recordsSnapshot;
+
+    // Indexes over active (not returned) loans only, so lookups never touch history.
+    // activeByUser is keyed by the lower-cased username; exact-case callers filter the bucket.
+    // linked: activeLoans() بيطلع المستخدمين بترتيب أول استعارة فعّالة
+    private final Map<String, List<BorrowRecord>> activeByUser = new LinkedHashMap<>();
+    private final Map<LoanKey, List<BorrowRecord>> activeByLoan = new HashMap<>();
+
+    private record LoanKey(String username, String isbn) {
+    }
+
+    // Returns are appended to "<file>.returns" as username,isbn,dueDate,returnDate and folded
+    // into the loans on load. Compaction moves loans closed more than archiveAfterDays ago into
+    // read-only monthly segments "<file>.archive.<yyyy-MM>", which are never loaded into memory.
+    // The rows on their way to the segments are first written to "<file>.archive-pending", so a
+    // compaction cut short is finished by the next one instead of archiving rows twice.
+    // Compaction only runs from compactHistory() or in the background after compactEvery
+    // returns; loading never rewrites the files.
+    static final int DEFAULT_COMPACT_EVERY = 1000;
+    static final int DEFAULT_ARCHIVE_AFTER_DAYS = 30;
+    private static final String UNDATED_SEGMENT = "undated";
+
+    private final int compactEvery;
+    private final int archiveAfterDays;
+    private final TimeProvider timeProvider;
+    private final Object fileLock = new Object();
+    private final List<Consumer<String>> loanListeners = new CopyOnWriteArrayList<>();
+    // thread واحد daemon لكل الـinstances، فما في executor لازم حدا يسكّره
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "borrow-records-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private int returnsSinceCompaction;
+    // Set by the compactor once cold loans are in the archive; readers drop them from memory.
+    private volatile LocalDate archivedCutoff;
+    private LocalDate prunedCutoff;
+
+    // each archive segment is mapped once ("<file>.history.<segment>") and rebuilt only when the
+    // segment grew; the view over them plus the hot records is recreated when a loan changes
+    private final Map<String, HistorySegment> mappedSegments = new LinkedHashMap<>();
+    private BorrowHistoryFile history;
+    private long historyBuiltAt = -1;
+    private long loanChanges;
 
     public BorrowRecordService() {
         this(resolveDefault("borrow_records.txt"));
     }
 
     public BorrowRecordService(String filePath) {
+        this(filePath, DEFAULT_COMPACT_EVERY);
+    }
+
+    public BorrowRecordService(String filePath, int compactEvery) {
+        this(filePath, compactEvery, DEFAULT_ARCHIVE_AFTER_DAYS);
+    }
+
+    public BorrowRecordService(String filePath, int compactEvery, int archiveAfterDays) {
+        this(filePath, compactEvery, archiveAfterDays, new SystemTimeProvider());
+    }
+
+    public BorrowRecordService(String filePath, int compactEvery, int archiveAfterDays, TimeProvider timeProvider) {
+        this(filePath, compactEvery, archiveAfterDays, timeProvider, true);
+    }
+
+    // load=false: LibraryBootstrap بيعمل loadRecords() على thread لحاله
+    BorrowRecordService(String filePath, int compactEvery, int archiveAfterDays, TimeProvider timeProvider, boolean load) {
         this.filePath = filePath;
-        loadRecords();
+        this.compactEvery = Math.max(1, compactEvery);
+        this.archiveAfterDays = Math.max(0, archiveAfterDays);
+        this.timeProvider = timeProvider;
+        if (load) loadRecords();
     }
 
 
-    public List<BorrowRecord> getRecords() {
-        return new ArrayList<>(records);
+    // بيتنادى باسم المستخدم كل ما تنضاف أو تنرجع استعارة فعّالة إله
+    public void addLoanListener(Consumer<String> listener) {
+        if (listener != null) {
+            loanListeners.add(listener);
+        }
     }
 
-    public BorrowRecord findActiveBorrowRecord(String username, String isbn) {
-        for (BorrowRecord record : records) {
-            if (!record.isReturned()
-                    && record.getUsername().equals(username)
-                    && record.getIsbn().equals(isbn)) {
-                return record;
-            }
+    public void removeLoanListener(Consumer<String> listener) {
+        loanListeners.remove(listener);
+    }
+
+    public synchronized List<BorrowRecord> getRecords() {
+        return new SnapshotList<>(snapshotRecords());
+    }
+
+    /**
+     * Read-only list of the in-memory records. Readers share it until the next change, so
+     * iterating costs no copy; {@link #getRecords()} wraps it for callers that modify the result.
+     */
+    public synchronized List<BorrowRecord> snapshotRecords() {
+        pruneArchived();
+        if (recordsSnapshot == null) {
+            recordsSnapshot = List.copyOf(records);
         }
-        return null;
+        return recordsSnapshot;
+    }
+
+    public Stream<BorrowRecord> streamRecords() {
+        return snapshotRecords().stream();
     }
 
-    public List<BorrowRecord> getActiveBorrowRecordsForUser(String username) {
+    public synchronized BorrowRecord findActiveBorrowRecord(String username, String isbn) {
+        List<BorrowRecord> loans = activeByLoan.get(new LoanKey(username, isbn));
+        if (loans == null) return null;
+
+        loans.removeIf(BorrowRecord::isReturned);
+        return loans.isEmpty() ? null : loans.get(0);
+    }
+
+    public synchronized List<BorrowRecord> getActiveBorrowRecordsForUser(String username) {
         List<BorrowRecord> result = new ArrayList<>();
-        for (BorrowRecord record : records) {
-            if (!record.isReturned() && record.getUsername().equals(username)) {
+        for (BorrowRecord record : activeBucket(username)) {
+            if (record.getUsername().equals(username)) {
                 result.add(record);
             }
         }
         return result;
     }
 
-    public void recordBorrow(String username, String isbn, LocalDate dueDate) {
+    // بدون نسخ: نفس استعارات getActiveBorrowRecordsForUser (الاسم بالزبط بنفس الأحرف)
+    public synchronized boolean anyActiveLoan(String username, Predicate<BorrowRecord> test) {
+        for (BorrowRecord record : activeBucket(username)) {
+            if (record.getUsername().equals(username) && test.test(record)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Every active loan, grouped by user, read from the active-loan index. Costs one pass over
+     * the open loans however long the history is.
+     */
+    public synchronized List<BorrowRecord> activeLoans() {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (Iterator<List<BorrowRecord>> it = activeByUser.values().iterator(); it.hasNext(); ) {
+            List<BorrowRecord> bucket = it.next();
+            bucket.removeIf(BorrowRecord::isReturned);
+            if (bucket.isEmpty()) it.remove();
+            else result.addAll(bucket);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public synchronized List<BorrowRecord> getActiveBorrowRecordsForUserIgnoreCase(String username) {
+        return new ArrayList<>(activeBucket(username));
+    }
+
+    public synchronized void recordBorrow(String username, String isbn, LocalDate dueDate) {
         BorrowRecord record = new BorrowRecord(username, isbn, dueDate, false, null);
-        records.add(record);
+        track(record);
         appendRecord(record);
     }
 
-    public void recordReturn(String username, String isbn, LocalDate returnDate) {
-        for (BorrowRecord record : records) {
-            if (!record.isReturned()
-                    && record.getUsername().equals(username)
-                    && record.getIsbn().equals(isbn)) {
+    // الدفعة كلها بتنضاف للذاكرة وبتنكتب بـappend واحد
+    public synchronized void recordBorrows(List<BorrowRecord> batch) {
+        if (batch.isEmpty()) return;
+        for (BorrowRecord record : batch) {
+            track(record);
+        }
+        appendRecords(batch);
+    }
 
-                record.markReturned(returnDate);
-                saveAll();
-                return;
-            }
+    /**
+     * Marks the given active records returned and writes them to the returns journal in one
+     * append. The records must come from this service (e.g. {@link #getActiveBorrowRecordsForUser}).
+     */
+    public synchronized void recordReturns(List<BorrowRecord> active, LocalDate returnDate) {
+        // ممكن يكون حدا رجّع وحدة منهم من وقت ما انقرت القائمة؛ هاي ما بتنسكّر مرتين
+        List<BorrowRecord> closing = new ArrayList<>(active.size());
+        for (BorrowRecord record : active) {
+            if (record.isReturned()) continue;
+            record.markReturned(returnDate);
+            untrack(record);
+            closing.add(record);
+        }
+        if (!closing.isEmpty()) appendReturns(closing);
+    }
+
+    /**
+     * Batch form of {@link #returnActiveLoan}: picks a separate active loan of {@code username}
+     * (any case) for every entry of {@code isbns} and closes them all under one lock, or closes
+     * none if an entry has no loan left. Returns copies of the loans as they were before the
+     * return, in the order of {@code isbns}, or null when nothing was closed.
+     */
+    public synchronized List<BorrowRecord> returnActiveLoans(String username, List<String> isbns, LocalDate returnDate) {
+        List<BorrowRecord> open = new ArrayList<>(activeBucket(username));
+        List<BorrowRecord> loans = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            BorrowRecord loan = takeLoan(open, isbn);
+            if (loan == null) return null;
+            loans.add(loan);
+        }
+
+        List<BorrowRecord> before = new ArrayList<>(loans.size());
+        for (BorrowRecord record : loans) {
+            before.add(new BorrowRecord(record.getUsername(), record.getIsbn(), record.getDueDate(), false, null));
+            record.markReturned(returnDate);
+            untrack(record);
+        }
+        appendReturns(loans);
+        return before;
+    }
+
+    private static BorrowRecord takeLoan(List<BorrowRecord> open, String isbn) {
+        for (int i = 0; i < open.size(); i++) {
+            if (open.get(i).getIsbn().equals(isbn)) return open.remove(i);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the oldest active loan of {@code username} for {@code isbn}, checked and closed
+     * under one lock so two desks cannot both return it. The result is a copy of the loan as it
+     * was before the return (for overdue days), or null if there was no active loan.
+     */
+    public synchronized BorrowRecord returnActiveLoan(String username, String isbn, LocalDate returnDate) {
+        BorrowRecord record = findActiveBorrowRecord(username, isbn);
+        if (record == null) return null;
+
+        BorrowRecord before = new BorrowRecord(record.getUsername(), record.getIsbn(), record.getDueDate(), false, null);
+        record.markReturned(returnDate);
+        untrack(record);
+        appendReturn(record);
+        return before;
+    }
+
+    public synchronized void recordReturn(String username, String isbn, LocalDate returnDate) {
+        BorrowRecord record = findActiveBorrowRecord(username, isbn);
+        if (record != null) {
+            record.markReturned(returnDate);
+            untrack(record);
+            appendReturn(record);
+            return;
         }
 
         BorrowRecord fallback = new BorrowRecord(username, isbn, returnDate, true, returnDate);
-        records.add(fallback);
-        saveAll();
+        track(fallback);
+        appendRecord(fallback);
     }
 
 
-    void loadRecords() {
+    synchronized void loadRecords() {
         records.clear();
+        recordsSnapshot = null;
+        loanChanges++;
+        activeByUser.clear();
+        activeByLoan.clear();
         File file = new File(filePath);
 
         if (!file.exists()) {
@@ -88,56 +303,466 @@ public class BorrowRecordService {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
+        List<String[]> returns;
+        synchronized (fileLock) {
+            for (BorrowRecord record : readRecords(filePath)) {
+                track(record);
+            }
+            returns = readReturns();
+        }
+        for (String[] ret : returns) {
+            BorrowRecord active = findActiveBorrowRecord(ret[0], ret[1], parseDate(ret[2]));
+            if (active != null) {
+                active.markReturned(parseDate(ret[3]));
+                untrack(active);
+            }
+        }
+    }
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+    // LibrarySnapshot بيرجّع السجلات (الفعّالة والحديثة) بدون ما نقرأ الملف
+    synchronized void restore(List<BorrowRecord> saved) {
+        records.clear();
+        recordsSnapshot = null;
+        loanChanges++;
+        activeByUser.clear();
+        activeByLoan.clear();
+        for (BorrowRecord record : saved) {
+            track(record);
+        }
+    }
 
-                String[] parts = line.split(",");
+    /**
+     * Whole history (archive + hot records) for paging and filtering, in due-date order. Archive
+     * segments are read through the index files compaction writes next to them; the hot records
+     * are merged in while a cursor walks. Opening the view only maps existing files and never
+     * writes any. Returns null when a segment has no up-to-date index (archived by an older
+     * version, or its index failed to build); callers then stream the records instead.
+     */
+    public synchronized BorrowHistoryFile openHistory() {
+        synchronized (fileLock) {
+            // داخل fileLock ما في compaction بالنص، فالأرشيف والذاكرة ما بيتكرروا
+            pruneArchived();
+            boolean segmentsChanged = refreshMappedSegments();
+            if (!segmentsChanged && history != null && historyBuiltAt == loanChanges) {
+                return history;
+            }
+            if (mappedSegments.size() < archiveSegments().size()) {
+                history = null;
+                return null;
+            }
+            history = new BorrowHistoryFile(new ArrayList<>(mappedSegments.values()), snapshotRecords());
+            historyBuiltAt = loanChanges;
+        }
+        return history;
+    }
 
-                if (parts.length >= 5) {
-                    String username = parts[0];
-                    String isbn = parts[1];
-                    LocalDate dueDate = parts[2].equals("null") ? null : LocalDate.parse(parts[2]);
-                    boolean returned = Boolean.parseBoolean(parts[3]);
-                    LocalDate returnDate = parts[4].equals("null") ? null : LocalDate.parse(parts[4]);
+    // بيعمل map للـindex الموجود بس؛ segment بدون index صالح بيضل برّا لحد الـcompaction الجاية
+    private boolean refreshMappedSegments() {
+        boolean changed = false;
+        Map<String, HistorySegment> current = new LinkedHashMap<>();
+        for (File segment : archiveSegments()) {
+            String name = segmentOf(segment);
+            long bytes = segment.length();
+            HistorySegment mapped = mappedSegments.get(name);
+            if (mapped == null || mapped.sourceBytes() != bytes) {
+                mapped = openIndex(name, bytes);
+                changed = true;
+            }
+            if (mapped != null) current.put(name, mapped);
+        }
+        if (!current.keySet().equals(mappedSegments.keySet())) changed = true;
+        mappedSegments.clear();
+        mappedSegments.putAll(current);
+        return changed;
+    }
 
-                    records.add(new BorrowRecord(username, isbn, dueDate, returned, returnDate));
+    // Runs at the end of every compaction, under fileLock: (re)builds the index of each segment
+    // that grew or has none yet, so reading the history never has to write.
+    private void indexSegments() {
+        for (File segment : archiveSegments()) {
+            String name = segmentOf(segment);
+            long bytes = segment.length();
+            HistorySegment mapped = mappedSegments.get(name);
+            if (mapped != null && mapped.sourceBytes() == bytes) continue;
+            try {
+                mapped = openIndex(name, bytes);
+                if (mapped == null) {
+                    try (Stream<String> lines = Files.lines(segment.toPath())) {
+                        mapped = HistorySegment.write(indexPath(name), lines.map(BorrowRecordService::parseRecord)
+                                .filter(Objects::nonNull).iterator(), bytes);
+                    }
                 }
+                mappedSegments.put(name, mapped);
+            } catch (IOException | UncheckedIOException e) {
+                // openHistory بيرجّع null لحد ما ينبنى، والقارئ بيقرأ الأرشيف سطر سطر
+                mappedSegments.remove(name);
+                System.out.println("Error indexing borrow history: " + e.getMessage());
             }
+        }
+    }
 
+    // null when the index is missing, from another version of the segment, or unreadable
+    private HistorySegment openIndex(String name, long bytes) {
+        Path index = indexPath(name);
+        if (!Files.exists(index)) return null;
+        try {
+            HistorySegment existing = HistorySegment.open(index);
+            return existing.sourceBytes() == bytes ? existing : null;
         } catch (IOException e) {
-            System.out.println("Error reading borrow records: " + e.getMessage());
+            return null;
         }
     }
 
-    private void appendRecord(BorrowRecord record) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-            writer.write(String.format("%s,%s,%s,%s,%s%n",
-                    record.getUsername(),
-                    record.getIsbn(),
-                    record.getDueDate() == null ? "null" : record.getDueDate(),
-                    record.isReturned(),
-                    record.getReturnDate() == null ? "null" : record.getReturnDate()));
+    private Path indexPath(String segment) {
+        return Path.of(filePath + ".history." + segment);
+    }
+
+    private static String segmentOf(File segment) {
+        return segment.getName().substring(segment.getName().lastIndexOf('.') + 1);
+    }
+
+    // Streams archived (cold) loans segment by segment, oldest month first, without loading them.
+    // The caller must close the stream.
+    public Stream<BorrowRecord> streamArchivedRecords() {
+        return archiveSegments().stream()
+                .flatMap(segment -> {
+                    try {
+                        return Files.lines(segment.toPath())
+                                .map(BorrowRecordService::parseRecord)
+                                .filter(Objects::nonNull);
+                    } catch (IOException e) {
+                        System.out.println("Error reading borrow archive: " + e.getMessage());
+                        return Stream.empty();
+                    }
+                });
+    }
+
+    private static List<BorrowRecord> readRecords(String path) {
+        List<BorrowRecord> result = new ArrayList<>();
+        if (!new File(path).exists()) return result;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                BorrowRecord record = parseRecord(line);
+                if (record != null) result.add(record);
+            }
+
         } catch (IOException e) {
-            System.out.println("Error writing borrow record: " + e.getMessage());
+            System.out.println("Error reading borrow records: " + e.getMessage());
         }
+        return result;
     }
 
-    private void saveAll() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            for (BorrowRecord record : records) {
-                writer.write(String.format("%s,%s,%s,%s,%s%n",
-                        record.getUsername(),
-                        record.getIsbn(),
-                        record.getDueDate() == null ? "null" : record.getDueDate(),
-                        record.isReturned(),
-                        record.getReturnDate() == null ? "null" : record.getReturnDate()));
+    private List<String[]> readReturns() {
+        List<String[]> result = new ArrayList<>();
+        if (!new File(returnsPath()).exists()) return result;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(returnsPath()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length >= 4) result.add(parts);
             }
         } catch (IOException e) {
-            System.out.println("Error saving borrow records: " + e.getMessage());
+            System.out.println("Error reading borrow returns: " + e.getMessage());
         }
+        return result;
+    }
+
+    private static BorrowRecord parseRecord(String line) {
+        if (line.trim().isEmpty()) return null;
+
+        String[] parts = line.split(",");
+        if (parts.length < 5) return null;
+
+        String username = parts[0];
+        String isbn = parts[1];
+        LocalDate dueDate = parseDate(parts[2]);
+        boolean returned = Boolean.parseBoolean(parts[3]);
+        LocalDate returnDate = parseDate(parts[4]);
+
+        return new BorrowRecord(username, isbn, dueDate, returned, returnDate);
+    }
+
+    private static LocalDate parseDate(String raw) {
+        return raw.equals("null") ? null : LocalDate.parse(raw);
+    }
+
+    private static String formatRecord(BorrowRecord record) {
+        return String.format("%s,%s,%s,%s,%s",
+                record.getUsername(),
+                record.getIsbn(),
+                record.getDueDate() == null ? "null" : record.getDueDate(),
+                record.isReturned(),
+                record.getReturnDate() == null ? "null" : record.getReturnDate());
+    }
+
+    private BorrowRecord findActiveBorrowRecord(String username, String isbn, LocalDate dueDate) {
+        List<BorrowRecord> loans = activeByLoan.get(new LoanKey(username, isbn));
+        if (loans == null) return null;
+
+        for (BorrowRecord record : loans) {
+            if (!record.isReturned() && record.isDueOn(dueDate)) return record;
+        }
+        return null;
+    }
+
+    private void appendRecord(BorrowRecord record) {
+        appendRecords(List.of(record));
+    }
+
+    private void appendRecords(List<BorrowRecord> batch) {
+        synchronized (fileLock) {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
+                for (BorrowRecord record : batch) {
+                    writer.write(formatRecord(record));
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing borrow record: " + e.getMessage());
+            }
+        }
+    }
+
+    private void appendReturn(BorrowRecord record) {
+        appendReturns(List.of(record));
+    }
+
+    private void appendReturns(List<BorrowRecord> batch) {
+        synchronized (fileLock) {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(returnsPath(), true))) {
+                for (BorrowRecord record : batch) {
+                    writer.write(String.format("%s,%s,%s,%s",
+                            record.getUsername(),
+                            record.getIsbn(),
+                            record.getDueDate() == null ? "null" : record.getDueDate(),
+                            record.getReturnDate() == null ? "null" : record.getReturnDate()));
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing borrow return: " + e.getMessage());
+                return;
+            }
+        }
+
+        returnsSinceCompaction += batch.size();
+        if (returnsSinceCompaction >= compactEvery) {
+            returnsSinceCompaction = 0;
+            COMPACTOR.submit(this::compactFiles);
+        }
+    }
+
+    // Folds the returns journal into the main file and moves cold loans to the archive segments.
+    // Works only on the files, under the same lock as the appends; memory catches up in pruneArchived.
+    public void compactHistory() {
+        try {
+            COMPACTOR.submit(this::compactFiles).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("Error compacting borrow records: " + e.getMessage());
+        }
+    }
+
+    private void compactFiles() {
+        synchronized (fileLock) {
+            try {
+                finishPendingArchive();
+
+                List<BorrowRecord> current = foldedRecords();
+                LocalDate cutoff = cutoff();
+                Map<String, List<BorrowRecord>> cold = new TreeMap<>();
+                List<BorrowRecord> hot = new ArrayList<>(current.size());
+                for (BorrowRecord record : current) {
+                    if (isCold(record, cutoff)) {
+                        cold.computeIfAbsent(segmentName(record), k -> new ArrayList<>()).add(record);
+                    } else {
+                        hot.add(record);
+                    }
+                }
+
+                // الترتيب مهم: pending أول، بعدين الملف الحار، وآخر إشي الـsegments
+                Map<String, Long> lengths = cold.isEmpty() ? Map.of() : writePendingArchive(cold);
+                writeHotFile(hot);
+                if (!cold.isEmpty()) {
+                    appendToSegments(cold, lengths);
+                    Files.deleteIfExists(Path.of(pendingArchivePath()));
+                }
+                archivedCutoff = cutoff;
+                indexSegments();
+                history = null;
+            } catch (IOException e) {
+                System.out.println("Error compacting borrow records: " + e.getMessage());
+            }
+        }
+    }
+
+    // the main file with the returns journal applied
+    private List<BorrowRecord> foldedRecords() {
+        List<BorrowRecord> current = readRecords(filePath);
+        for (String[] ret : readReturns()) {
+            LocalDate due = parseDate(ret[2]);
+            for (BorrowRecord record : current) {
+                if (!record.isReturned()
+                        && record.getUsername().equals(ret[0])
+                        && record.getIsbn().equals(ret[1])
+                        && record.isDueOn(due)) {
+                    record.markReturned(parseDate(ret[3]));
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void writeHotFile(List<BorrowRecord> hot) throws IOException {
+        File tmp = new File(filePath + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(tmp))) {
+            for (BorrowRecord record : hot) {
+                out.write(formatRecord(record));
+                out.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), new File(filePath).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(new File(returnsPath()).toPath());
+    }
+
+    // "#segment,length" (طول الـsegment قبل الإضافة) وبعده سطور الدفعة؛ بينكتب كامل أو ما بينكتب
+    private Map<String, Long> writePendingArchive(Map<String, List<BorrowRecord>> cold) throws IOException {
+        Map<String, Long> lengths = new LinkedHashMap<>();
+        File tmp = new File(pendingArchivePath() + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(tmp))) {
+            for (Map.Entry<String, List<BorrowRecord>> segment : cold.entrySet()) {
+                long length = new File(archivePrefix() + segment.getKey()).length();
+                lengths.put(segment.getKey(), length);
+                out.write("#" + segment.getKey() + "," + length);
+                out.newLine();
+                for (BorrowRecord record : segment.getValue()) {
+                    out.write(formatRecord(record));
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tmp.toPath(), Path.of(pendingArchivePath()),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return lengths;
+    }
+
+    // Finishes a compaction that stopped after writing the pending file: drops its rows from the
+    // main file if they are still there, then completes the segment appends.
+    private void finishPendingArchive() throws IOException {
+        Path pending = Path.of(pendingArchivePath());
+        if (!Files.exists(pending)) return;
+
+        Map<String, List<BorrowRecord>> cold = new TreeMap<>();
+        Map<String, Long> lengths = new LinkedHashMap<>();
+        Map<String, Integer> archived = new HashMap<>();
+        String segment = null;
+        for (String line : Files.readAllLines(pending, Charset.defaultCharset())) {
+            if (line.startsWith("#")) {
+                int comma = line.lastIndexOf(',');
+                segment = line.substring(1, comma);
+                lengths.put(segment, Long.parseLong(line.substring(comma + 1)));
+                cold.put(segment, new ArrayList<>());
+                continue;
+            }
+            BorrowRecord record = parseRecord(line);
+            if (record == null || segment == null) continue;
+            cold.get(segment).add(record);
+            archived.merge(formatRecord(record), 1, Integer::sum);
+        }
+
+        List<BorrowRecord> current = foldedRecords();
+        List<BorrowRecord> hot = new ArrayList<>(current.size());
+        for (BorrowRecord record : current) {
+            String line = formatRecord(record);
+            Integer left = archived.get(line);
+            if (left != null && left > 0) {
+                archived.put(line, left - 1);
+            } else {
+                hot.add(record);
+            }
+        }
+        if (hot.size() < current.size()) writeHotFile(hot);
+
+        appendToSegments(cold, lengths);
+        Files.delete(pending);
+    }
+
+    // Idempotent: a segment that already grew by exactly this batch is left alone, and one cut off
+    // in the middle of an append is trimmed back to its old length first.
+    private void appendToSegments(Map<String, List<BorrowRecord>> cold, Map<String, Long> lengths) throws IOException {
+        for (Map.Entry<String, List<BorrowRecord>> segment : cold.entrySet()) {
+            StringBuilder batch = new StringBuilder();
+            for (BorrowRecord record : segment.getValue()) {
+                batch.append(formatRecord(record)).append(System.lineSeparator());
+            }
+            byte[] bytes = batch.toString().getBytes(Charset.defaultCharset());
+            Path file = Path.of(archivePrefix() + segment.getKey());
+            long before = lengths.getOrDefault(segment.getKey(), 0L);
+            long now = Files.exists(file) ? Files.size(file) : 0L;
+            if (now == before + bytes.length) continue;
+
+            if (now > before) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(before);
+                }
+            }
+            Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private LocalDate cutoff() {
+        return timeProvider.today().minusDays(archiveAfterDays);
+    }
+
+    private static boolean isCold(BorrowRecord record, LocalDate cutoff) {
+        if (!record.isReturned()) return false;
+        if (record.getReturnDate() == null) return true;
+        return record.getReturnDate().isBefore(cutoff);
+    }
+
+    private void pruneArchived() {
+        LocalDate cutoff = archivedCutoff;
+        if (cutoff == null || cutoff.equals(prunedCutoff)) return;
+
+        records.removeIf(record -> isCold(record, cutoff));
+        recordsSnapshot = null;
+        prunedCutoff = cutoff;
+    }
+
+    private static String segmentName(BorrowRecord record) {
+        LocalDate returned = record.getReturnDate();
+        return returned == null ? UNDATED_SEGMENT : YearMonth.from(returned).toString();
+    }
+
+    // "undated" sorts after the yyyy-MM names, so move it to the front as the oldest segment
+    private List<File> archiveSegments() {
+        File base = new File(filePath).getAbsoluteFile();
+        File dir = base.getParentFile();
+        String prefix = base.getName() + ".archive.";
+        File[] files = dir == null ? null : dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (files == null) return List.of();
+
+        List<File> segments = new ArrayList<>(List.of(files));
+        segments.sort(Comparator.comparing((File f) -> !f.getName().endsWith(UNDATED_SEGMENT))
+                .thenComparing(File::getName));
+        return segments;
+    }
+
+    String returnsPath() {
+        return filePath + ".returns";
+    }
+
+    private String archivePrefix() {
+        return filePath + ".archive.";
+    }
+
+    private String pendingArchivePath() {
+        return filePath + ".archive-pending";
     }
 
     private static String resolveDefault(String filename) {
@@ -146,46 +771,92 @@ public class BorrowRecordService {
     }
 
 
-    public boolean hasActiveBorrows(String username) {
-        for (BorrowRecord record : records) {
-            if (!record.isReturned() && record.getUsername().equals(username)) {
+    public synchronized boolean hasActiveBorrows(String username) {
+        for (BorrowRecord record : activeBucket(username)) {
+            if (record.getUsername().equals(username)) {
                 return true;
             }
         }
         return false;
     }
 
-    public List<BorrowRecord> getAllRecords() {
-        return new ArrayList<>(records);
+    public synchronized List<BorrowRecord> getAllRecords() {
+        return new SnapshotList<>(snapshotRecords());
     }
-    public void closeRecord(String username, String isbn) {
-        for (BorrowRecord record : records) {
-            if (!record.isReturned()
-                    && record.getUsername().equals(username)
-                    && record.getIsbn().equals(isbn)) {
-
-                record.markReturned(LocalDate.now());
-                saveAll();
-                return;
-            }
+    public synchronized void closeRecord(String username, String isbn) {
+        BorrowRecord record = findActiveBorrowRecord(username, isbn);
+        if (record != null) {
+            record.markReturned(LocalDate.now());
+            untrack(record);
+            appendReturn(record);
+            return;
         }
 
 
         BorrowRecord fallback = new BorrowRecord(username, isbn, LocalDate.now(), true, LocalDate.now());
-        records.add(fallback);
-        saveAll();
+        track(fallback);
+        appendRecord(fallback);
     }
-    public void addBorrowRecord(BorrowRecord record) {
-        records.add(record);
+    public synchronized void addBorrowRecord(BorrowRecord record) {
+        track(record);
         appendRecord(record);
     }
     // إضافة سجل استعارة جديد
-    public void addBorrowRecord(String username, String isbn) {
+    public synchronized void addBorrowRecord(String username, String isbn) {
         if (username == null || isbn == null || username.isBlank() || isbn.isBlank()) return;
 
         LocalDate dueDate = LocalDate.now().plusDays(14); // مهلة استعارة 14 يوم
         BorrowRecord record = new BorrowRecord(username, isbn, dueDate, false, null);
+        track(record);
+    }
+
+    private void track(BorrowRecord record) {
         records.add(record);
+        recordsSnapshot = null;
+        if (record.isReturned()) {
+            loanChanges++;
+            return;
+        }
+
+        activeByUser.computeIfAbsent(userKey(record.getUsername()), k -> new ArrayList<>()).add(record);
+        activeByLoan.computeIfAbsent(new LoanKey(record.getUsername(), record.getIsbn()), k -> new ArrayList<>()).add(record);
+        loanChanged(record.getUsername());
+    }
+
+    private void untrack(BorrowRecord record) {
+        List<BorrowRecord> byUser = activeByUser.get(userKey(record.getUsername()));
+        if (byUser != null) {
+            byUser.remove(record);
+            if (byUser.isEmpty()) activeByUser.remove(userKey(record.getUsername()));
+        }
+
+        LoanKey key = new LoanKey(record.getUsername(), record.getIsbn());
+        List<BorrowRecord> byLoan = activeByLoan.get(key);
+        if (byLoan != null) {
+            byLoan.remove(record);
+            if (byLoan.isEmpty()) activeByLoan.remove(key);
+        }
+        loanChanged(record.getUsername());
+    }
+
+    private void loanChanged(String username) {
+        loanChanges++;
+        for (Consumer<String> listener : loanListeners) {
+            listener.accept(username);
+        }
+    }
+
+    // Records can be marked returned from outside (markReturned), so drop those lazily.
+    private List<BorrowRecord> activeBucket(String username) {
+        List<BorrowRecord> bucket = activeByUser.get(userKey(username));
+        if (bucket == null) return List.of();
+
+        bucket.removeIf(BorrowRecord::isReturned);
+        return bucket;
+    }
+
+    private static String userKey(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ROOT);
     }
 
 
@@ -0,0 +1,250 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-per-field storage behind {@link MediaService#enableColumnarCatalog()}. A title costs
+ * five ints plus its UTF-8 title and ISBN bytes, instead of three Strings, a LocalDate and the
+ * fields of a {@link Media}. Authors are stored once in a dictionary and due dates as epoch days.
+ *
+ * <p>{@link #add(Media)} copies an item into a new row and returns its row object: a
+ * {@link Book} or {@link CD} that keeps only the catalog and the row number and reads and
+ * writes the columns. There is one row object per row, so the service's indexes (which key on
+ * identity) keep working, and so do {@code instanceof} checks and the copy counters'
+ * compare-and-set. Rows are appended under the service's catalog write lock and read without
+ * any lock; columns grow in fixed chunks that never move, so a counter update can't be lost
+ * to a resize. A removed row keeps its space until the catalog is rebuilt on the next load.
+ */
+final class ColumnarCatalog {
+
+    private static final int SHIFT = 12;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+    // النص بقطع 1MB؛ textAt = رقم القطعة << 20 | الـoffset جواها
+    private static final int TEXT_SHIFT = 20;
+    private static final int TEXT_CHUNK = 1 << TEXT_SHIFT;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_AUTHOR = -1;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // العدادات (المتاح والكل والاستحقاق) بتتغيّر بعد الإضافة، فبتنقرا وتنكتب volatile
+    private volatile int[][] textAt = new int[0][];
+    private volatile int[][] authorOf = new int[0][];
+    private volatile int[][] total = new int[0][];
+    private volatile int[][] available = new int[0][];
+    private volatile int[][] dueDay = new int[0][];
+    private volatile byte[][] text = new byte[0][];
+    private volatile String[] authors = new String[16];
+
+    // للإضافة بس (تحت قفل this)
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private int rows;
+    private int textChunk = -1;
+    private int textUsed = TEXT_CHUNK;
+
+    synchronized Media add(Media media) {
+        if (media == null || owns(media)) return media;
+
+        int row = rows;
+        if ((row & MASK) == 0) growRows();
+        int chunk = row >>> SHIFT;
+        int at = row & MASK;
+        textAt[chunk][at] = appendText(media.getTitle(), media.getIsbn());
+        authorOf[chunk][at] = authorId(media.getAuthor());
+        total[chunk][at] = media.getTotalCopies();
+        LocalDate due = media.getDueDate();
+        dueDay[chunk][at] = due == null ? NO_DATE : (int) due.toEpochDay();
+        // آخر كتابة volatile: اللي بيشوف الصف بعد هيك بيشوف باقي الأعمدة كمان
+        INTS.setVolatile(available[chunk], at, media.getAvailableCopies());
+        rows = row + 1;
+        return media instanceof CD ? new CDRow(this, row) : new BookRow(this, row);
+    }
+
+    boolean owns(Media media) {
+        return (media instanceof BookRow b && b.catalog == this)
+                || (media instanceof CDRow c && c.catalog == this);
+    }
+
+    synchronized int size() {
+        return rows;
+    }
+
+    synchronized int authorCount() {
+        return authorIds.size();
+    }
+
+    private void growRows() {
+        int chunks = (rows >>> SHIFT) + 1;
+        textAt = grow(textAt, chunks);
+        authorOf = grow(authorOf, chunks);
+        total = grow(total, chunks);
+        available = grow(available, chunks);
+        dueDay = grow(dueDay, chunks);
+    }
+
+    private static int[][] grow(int[][] column, int chunks) {
+        int[][] bigger = Arrays.copyOf(column, chunks);
+        bigger[chunks - 1] = new int[CHUNK];
+        return bigger;
+    }
+
+    // كل صف: طول العنوان، العنوان، طول الـISBN، الـISBN، بنفس القطعة
+    private int appendText(String title, String isbn) {
+        byte[] t = title == null ? null : title.getBytes(StandardCharsets.UTF_8);
+        byte[] i = isbn == null ? null : isbn.getBytes(StandardCharsets.UTF_8);
+        int needed = 8 + (t == null ? 0 : t.length) + (i == null ? 0 : i.length);
+
+        if (textUsed + needed > TEXT_CHUNK) {
+            textChunk++;
+            if (textChunk >= 1 << (31 - TEXT_SHIFT)) {
+                throw new IllegalStateException("Columnar catalog text is full");
+            }
+            byte[][] bigger = Arrays.copyOf(text, textChunk + 1);
+            // صف أطول من قطعة بياخذ قطعة على قده
+            bigger[textChunk] = new byte[Math.max(TEXT_CHUNK, needed)];
+            text = bigger;
+            textUsed = 0;
+        }
+
+        byte[] chunk = text[textChunk];
+        int start = textUsed;
+        int at = putString(chunk, start, t);
+        textUsed = putString(chunk, at, i);
+        return (textChunk << TEXT_SHIFT) | start;
+    }
+
+    private static int putString(byte[] chunk, int at, byte[] value) {
+        int length = value == null ? -1 : value.length;
+        chunk[at] = (byte) (length >>> 24);
+        chunk[at + 1] = (byte) (length >>> 16);
+        chunk[at + 2] = (byte) (length >>> 8);
+        chunk[at + 3] = (byte) length;
+        if (value == null) return at + 4;
+        System.arraycopy(value, 0, chunk, at + 4, value.length);
+        return at + 4 + value.length;
+    }
+
+    private int authorId(String author) {
+        if (author == null) return NO_AUTHOR;
+        Integer id = authorIds.get(author);
+        if (id != null) return id;
+
+        int next = authorIds.size();
+        String[] names = authors;
+        if (next == names.length) names = Arrays.copyOf(names, next * 2);
+        names[next] = author;
+        // الـarray بينشر بعد ما الاسم انكتب فيه
+        authors = names;
+        authorIds.put(author, next);
+        return next;
+    }
+
+    // -----------------------------
+    //         COLUMN ACCESS
+    // -----------------------------
+    private String title(int row) {
+        return string(row, false);
+    }
+
+    private String isbn(int row) {
+        return string(row, true);
+    }
+
+    private String string(int row, boolean isbn) {
+        int at = textAt[row >>> SHIFT][row & MASK];
+        byte[] chunk = text[at >>> TEXT_SHIFT];
+        int offset = at & (TEXT_CHUNK - 1);
+        int length = readLength(chunk, offset);
+        if (isbn) {
+            offset += 4 + Math.max(0, length);
+            length = readLength(chunk, offset);
+        }
+        return length < 0 ? null : new String(chunk, offset + 4, length, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(byte[] chunk, int at) {
+        return (chunk[at] << 24) | ((chunk[at + 1] & 0xFF) << 16) | ((chunk[at + 2] & 0xFF) << 8) | (chunk[at + 3] & 0xFF);
+    }
+
+    private String author(int row) {
+        int id = authorOf[row >>> SHIFT][row & MASK];
+        return id == NO_AUTHOR ? null : authors[id];
+    }
+
+    private int readInt(int[][] column, int row) {
+        return (int) INTS.getVolatile(column[row >>> SHIFT], row & MASK);
+    }
+
+    private void writeInt(int[][] column, int row, int value) {
+        INTS.setVolatile(column[row >>> SHIFT], row & MASK, value);
+    }
+
+    private boolean casAvailable(int row, int expected, int updated) {
+        return INTS.compareAndSet(available[row >>> SHIFT], row & MASK, expected, updated);
+    }
+
+    private LocalDate due(int row) {
+        int day = readInt(dueDay, row);
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    private void setDue(int row, LocalDate due) {
+        writeInt(dueDay, row, due == null ? NO_DATE : (int) due.toEpochDay());
+    }
+
+    // -----------------------------
+    //           ROW VIEWS
+    // -----------------------------
+    // Book وCD منفصلين عشان instanceof؛ نفس الـoverrides بالزبط بالاثنين
+
+    private static final class BookRow extends Book {
+        private final ColumnarCatalog catalog;
+        private final int row;
+
+        BookRow(ColumnarCatalog catalog, int row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+
+        @Override public String getTitle() { return catalog.title(row); }
+        @Override public String getAuthor() { return catalog.author(row); }
+        @Override public String getIsbn() { return catalog.isbn(row); }
+        @Override public LocalDate getDueDate() { return catalog.due(row); }
+        @Override public void setDueDate(LocalDate dueDate) { catalog.setDue(row, dueDate); }
+        @Override protected int readAvailable() { return catalog.readInt(catalog.available, row); }
+        @Override protected boolean casAvailable(int expected, int updated) { return catalog.casAvailable(row, expected, updated); }
+        @Override protected int readTotal() { return catalog.readInt(catalog.total, row); }
+        @Override protected void writeTotal(int total) { catalog.writeInt(catalog.total, row, total); }
+    }
+
+    private static final class CDRow extends CD {
+        private final ColumnarCatalog catalog;
+        private final int row;
+
+        CDRow(ColumnarCatalog catalog, int row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+
+        @Override public String getTitle() { return catalog.title(row); }
+        @Override public String getAuthor() { return catalog.author(row); }
+        @Override public String getIsbn() { return catalog.isbn(row); }
+        @Override public LocalDate getDueDate() { return catalog.due(row); }
+        @Override public void setDueDate(LocalDate dueDate) { catalog.setDue(row, dueDate); }
+        @Override protected int readAvailable() { return catalog.readInt(catalog.available, row); }
+        @Override protected boolean casAvailable(int expected, int updated) { return catalog.casAvailable(row, expected, updated); }
+        @Override protected int readTotal() { return catalog.readInt(catalog.total, row); }
+        @Override protected void writeTotal(int total) { catalog.writeInt(catalog.total, row, total); }
+    }
+}
@@ -5,13 +5,46 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class FineService {
 
     private final Path filePath;
-    private final Map<String, Integer> balances = new HashMap<>();
+    // merge/compute بيعملوا read-modify-write ذرّي لكل user، فما في تحديث بيضيع
+    private final Map<String, Integer> balances = new ConcurrentHashMap<>();
+
+    // seqlock-style counters: a snapshot is consistent when no update started or finished while copying
+    private final AtomicLong updatesStarted = new AtomicLong();
+    private final AtomicLong updatesFinished = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(-1, Map.of());
+    private final ReadWriteLock updateLock = new ReentrantReadWriteLock();
+
+    private record Snapshot(long version, Map<String, Integer> balances) {
+    }
+
+    // write-behind: null means every change rewrites fines.txt right away (the default)
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService flusher;
+    private ScheduledFuture<?> pendingFlush;
+    private Thread shutdownFlush;
+    private long flushWindowMillis;
+    private int maxDirty;
+    // flush بيشيل من dirty قبل الكتابة، فهاد بيخلّي isDirty صح لحد ما الملف ينكتب فعلاً
+    private int flushesInFlight;
+    // الكتابة على fines.txt (وملف الـ.tmp) وحدة وحدة؛ منفصل عن this عشان التحديثات ما تستنى الديسك
+    private final Object saveLock = new Object();
 
 
     public FineService() {
@@ -23,8 +56,13 @@ public class FineService {
     }
 
     public FineService(Path filePath) {
+        this(filePath, true);
+    }
+
+    // load=false: LibraryBootstrap بيعمل load() على thread لحاله
+    FineService(Path filePath, boolean load) {
         this.filePath = filePath;
-        load();
+        if (load) load();
     }
 
 
@@ -36,23 +74,86 @@ public class FineService {
 
     public void addFine(String username, int amount) {
         if (username == null || amount <= 0) return;
-        balances.put(username, getBalance(username) + amount);
-        save();
+        beginUpdate();
+        try {
+            balances.merge(username, amount, Integer::sum);
+        } finally {
+            endUpdate();
+        }
+        changed(username);
     }
 
 
     public int payFine(String username, int amount) {
         if (username == null || amount <= 0) return getBalance(username);
 
-        int updated = Math.max(0, getBalance(username) - amount);
-        balances.put(username, updated);
-        save();
+        int updated;
+        beginUpdate();
+        try {
+            updated = balances.compute(username, (k, current) -> Math.max(0, (current == null ? 0 : current) - amount));
+        } finally {
+            endUpdate();
+        }
+        changed(username);
         return updated;
     }
 
 
     public Map<String, Integer> getAllBalances() {
-        return new HashMap<>(balances);
+        return new SnapshotMap<>(snapshotBalances());
+    }
+
+    /**
+     * Read-only, point-in-time copy of all balances, in the map's iteration order (the row
+     * order of fines.txt). It is rebuilt without locking only when something changed since the
+     * last call. Readers that race with a write retry the copy a few times, then block updates
+     * for one copy instead of returning a torn one.
+     */
+    public Map<String, Integer> snapshotBalances() {
+        for (int attempt = 0; attempt < 16; attempt++) {
+            long version = updatesFinished.get();
+            Snapshot cached = snapshot;
+            if (cached.version() == version && updatesStarted.get() == version) {
+                return cached.balances();
+            }
+            if (updatesStarted.get() != version) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            Map<String, Integer> copy = copyBalances();
+            // لو ما في ولا تحديث بلش أو خلص وإحنا بننسخ، النسخة متطابقة مع لحظة وحدة
+            if (updatesStarted.get() == version && updatesFinished.get() == version) {
+                snapshot = new Snapshot(version, copy);
+                return copy;
+            }
+        }
+
+        // تحت ضغط كتابة مستمر: بنوقّف التحديثات لنسخة وحدة بدل ما نرجّع نسخة مخلوطة
+        updateLock.writeLock().lock();
+        try {
+            long version = updatesFinished.get();
+            Map<String, Integer> copy = copyBalances();
+            snapshot = new Snapshot(version, copy);
+            return copy;
+        } finally {
+            updateLock.writeLock().unlock();
+        }
+    }
+
+    private Map<String, Integer> copyBalances() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(balances));
+    }
+
+    // التحديثات بياخذوا الـread lock مع بعض بدون ما يستنوا بعض؛ بس الـsnapshot الاحتياطي بياخذ الـwrite lock
+    private void beginUpdate() {
+        updateLock.readLock().lock();
+        updatesStarted.incrementAndGet();
+    }
+
+    private void endUpdate() {
+        updatesFinished.incrementAndGet();
+        updateLock.readLock().unlock();
     }
 
 
@@ -61,29 +162,139 @@ public class FineService {
 
         int balance = getBalance(username);
         if (balance > 0) {
-            balances.put(username, balance);
+            // بالعادة الرصيد موجود أصلاً بنفس القيمة، فما في إشي ينكتب؛ putIfAbsent ما بيدوس على تحديث بنفس اللحظة
+            Integer previous;
+            beginUpdate();
+            try {
+                previous = balances.putIfAbsent(username, balance);
+            } finally {
+                endUpdate();
+            }
+            if (previous == null) changed(username);
+        }
+    }
+
+
+    public synchronized void enableWriteBehind(long flushWindowMillis, int maxDirty) {
+        if (flusher != null) return;
+
+        this.flushWindowMillis = Math.max(0, flushWindowMillis);
+        this.maxDirty = Math.max(1, maxDirty);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fines-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.shutdownFlush = new Thread(this::flush, "fines-shutdown-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+    }
+
+    public synchronized boolean isDirty() {
+        return !dirty.isEmpty() || flushesInFlight > 0;
+    }
+
+    public void flush() {
+        Set<String> flushed;
+        synchronized (this) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            if (dirty.isEmpty()) return;
+
+            flushed = new HashSet<>(dirty);
+            dirty.removeAll(flushed);
+            flushesInFlight++;
+        }
+        try {
             save();
+        } catch (RuntimeException e) {
+            dirty.addAll(flushed);
+            throw e;
+        } finally {
+            synchronized (this) {
+                flushesInFlight--;
+            }
+        }
+    }
+
+    public void close() {
+        flush();
+
+        synchronized (this) {
+            if (flusher == null) return;
+            flusher.shutdown();
+            flusher = null;
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                // already shutting down, the hook runs anyway
+            }
         }
     }
 
+    // التحديث نفسه ما بيستنى قفل؛ الجدولة تحت this، والكتابة برّا تحت saveLock
+    private void changed(String username) {
+        boolean writeBehind;
+        boolean flushNow = false;
+        synchronized (this) {
+            writeBehind = flusher != null;
+            if (writeBehind) {
+                dirty.add(username);
+                if (dirty.size() >= maxDirty) {
+                    flushNow = true;
+                } else if (pendingFlush == null) {
+                    pendingFlush = flusher.schedule(this::flushQuietly, flushWindowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
 
+        if (!writeBehind) {
+            save();
+        } else if (flushNow) {
+            flush();
+        }
+    }
 
+    private void flushQuietly() {
+        synchronized (this) {
+            pendingFlush = null;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // dirty set is kept, the next change or flush() retries
+            System.out.println("Error saving fines: " + e.getMessage());
+        }
+    }
+
+
+
+    // الـsnapshot بيتاخذ جوّا saveLock، فآخر واحد بيكتب دايماً معه أحدث نسخة
     void save() {
+        synchronized (saveLock) {
+            writeBalances();
+        }
+    }
+
+    private void writeBalances() {
         try {
             if (filePath.getParent() != null)
                 Files.createDirectories(filePath.getParent());
 
+            Path tmp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
             try (BufferedWriter writer = Files.newBufferedWriter(
-                    filePath,
+                    tmp,
                     StandardCharsets.UTF_8,
                     StandardOpenOption.TRUNCATE_EXISTING,
                     StandardOpenOption.CREATE)) {
 
-                for (var entry : balances.entrySet()) {
+                for (var entry : snapshotBalances().entrySet()) {
                     writer.write(entry.getKey() + "," + entry.getValue());
                     writer.newLine();
                 }
             }
+            Files.move(tmp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
         } catch (IOException e) {
             throw new RuntimeException("Error saving fines", e);
@@ -91,7 +302,27 @@ public class FineService {
     }
 
 
-    private void load() {
+    void load() {
+        beginUpdate();
+        try {
+            readBalances();
+        } finally {
+            endUpdate();
+        }
+    }
+
+    // LibrarySnapshot بيرجّع الأرصدة بدون ما نقرأ fines.txt
+    void restore(Map<String, Integer> saved) {
+        beginUpdate();
+        try {
+            balances.clear();
+            balances.putAll(saved);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    private void readBalances() {
         balances.clear();
 
         try {
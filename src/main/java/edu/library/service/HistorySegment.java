@@ -0,0 +1,397 @@
+package edu.library.service;
+
+import edu.library.domain.model.BorrowRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One read-only, memory-mapped archive segment of the borrow history. Rows are fixed-width and
+ * sorted by due date, so a date range is found by binary search. Usernames and ISBNs live once
+ * in a sorted string table. Per-user and per-ISBN posting lists of row numbers serve as the
+ * offset index. Archive segments are append-only, so the header keeps the byte length of the
+ * text segment it was built from; the file is rebuilt only when that length changes.
+ *
+ * <pre>
+ * header     MAGIC, VERSION, rows, strings, the offset of each section below, long sourceBytes
+ * rows       rows x (int user, int isbn, int dueEpochDay, int returnEpochDay, int flags)
+ * strings    (strings + 1) x int offset, then UTF-8 bytes, sorted by String.compareTo
+ * by user    (strings + 1) x int start, then rows x int row number
+ * by isbn    (strings + 1) x int start, then rows x int row number
+ * </pre>
+ */
+final class HistorySegment {
+
+    static final int MAGIC = 0x42484953; // "BHIS"
+    static final int VERSION = 2;
+
+    private static final int HEADER = 48;
+    private static final int ROW = 20;
+    static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int RETURNED = 1;
+
+    private final ByteBuffer map;
+    private final int rows;
+    private final int strings;
+    private final int stringIndexAt;
+    private final int stringDataAt;
+    private final int userIndexAt;
+    private final int userPostingsAt;
+    private final int isbnIndexAt;
+    private final int isbnPostingsAt;
+    // النصوص قليلة مقارنة بالصفوف، فبنفك كل وحدة مرة وحدة بس
+    private final String[] decoded;
+    private final long sourceBytes;
+
+    private HistorySegment(ByteBuffer map) throws IOException {
+        this.map = map;
+        if (map.capacity() < HEADER || map.getInt(0) != MAGIC) throw new IOException("Not a borrow history file");
+        if (map.getInt(4) != VERSION) throw new IOException("Unsupported borrow history version " + map.getInt(4));
+        this.rows = map.getInt(8);
+        this.strings = map.getInt(12);
+        this.stringIndexAt = map.getInt(16);
+        this.stringDataAt = map.getInt(20);
+        this.userIndexAt = map.getInt(24);
+        this.userPostingsAt = map.getInt(28);
+        this.isbnIndexAt = map.getInt(32);
+        this.isbnPostingsAt = map.getInt(36);
+        this.sourceBytes = map.getLong(40);
+        if ((long) isbnPostingsAt + 4L * rows != map.capacity()) throw new IOException("Truncated borrow history file");
+        this.decoded = new String[strings];
+    }
+
+    static HistorySegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Borrow history file too large");
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HistorySegment(map);
+        }
+    }
+
+    /**
+     * Writes {@code records} to {@code target} (temp file + rename) and maps the result. Only
+     * five ints per row of this one segment are kept on the heap while sorting.
+     */
+    static HistorySegment write(Path target, Iterator<BorrowRecord> records, long sourceBytes) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] data = new int[5 * 1024];
+        int count = 0;
+
+        while (records.hasNext()) {
+            BorrowRecord r = records.next();
+            if (5L * (count + 1) > data.length) {
+                if (data.length >= Integer.MAX_VALUE / 2) throw new IOException("Borrow history too large");
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int at = 5 * count++;
+            data[at] = intern(r.getUsername(), ids, names);
+            data[at + 1] = intern(r.getIsbn(), ids, names);
+            data[at + 2] = dueDay(r);
+            data[at + 3] = epochDay(r.getReturnDate());
+            data[at + 4] = r.isReturned() ? RETURNED : 0;
+        }
+
+        // ترتيب النصوص عشان البحث عن اسم يكون binary search على الملف
+        String[] sorted = names.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] remap = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            remap[ids.get(sorted[i])] = i;
+        }
+        byte[][] utf8 = new byte[sorted.length][];
+        long stringBytes = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            utf8[i] = sorted[i].getBytes(StandardCharsets.UTF_8);
+            stringBytes += utf8[i].length;
+        }
+
+        // الصفوف مرتبة حسب الـdue date، وبنفس الترتيب اللي إجوا فيه لو التاريخ نفسه
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) data[5 * i + 2] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int strings = sorted.length;
+        long stringIndexAt = HEADER + (long) ROW * count;
+        long stringDataAt = stringIndexAt + 4L * (strings + 1);
+        long userIndexAt = stringDataAt + stringBytes;
+        long userPostingsAt = userIndexAt + 4L * (strings + 1);
+        long isbnIndexAt = userPostingsAt + 4L * count;
+        long isbnPostingsAt = isbnIndexAt + 4L * (strings + 1);
+        if (isbnPostingsAt + 4L * count > Integer.MAX_VALUE) throw new IOException("Borrow history too large");
+
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(strings);
+            out.writeInt((int) stringIndexAt);
+            out.writeInt((int) stringDataAt);
+            out.writeInt((int) userIndexAt);
+            out.writeInt((int) userPostingsAt);
+            out.writeInt((int) isbnIndexAt);
+            out.writeInt((int) isbnPostingsAt);
+            out.writeLong(sourceBytes);
+
+            int[] userOf = new int[count];
+            int[] isbnOf = new int[count];
+            for (int row = 0; row < count; row++) {
+                int at = 5 * (int) order[row];
+                userOf[row] = remap[data[at]];
+                isbnOf[row] = remap[data[at + 1]];
+                out.writeInt(userOf[row]);
+                out.writeInt(isbnOf[row]);
+                out.writeInt(data[at + 2]);
+                out.writeInt(data[at + 3]);
+                out.writeInt(data[at + 4]);
+            }
+            data = null;
+
+            int offset = 0;
+            for (byte[] s : utf8) {
+                out.writeInt(offset);
+                offset += s.length;
+            }
+            out.writeInt(offset);
+            for (byte[] s : utf8) {
+                out.write(s);
+            }
+
+            writePostings(out, userOf, strings);
+            writePostings(out, isbnOf, strings);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    // counting sort: أرقام الصفوف لكل id بتطلع مرتبة تصاعدياً، يعني حسب الـdue date
+    private static void writePostings(DataOutputStream out, int[] idOf, int strings) throws IOException {
+        int[] start = new int[strings + 1];
+        for (int id : idOf) start[id + 1]++;
+        for (int i = 0; i < strings; i++) start[i + 1] += start[i];
+
+        int[] postings = new int[idOf.length];
+        int[] next = Arrays.copyOf(start, strings);
+        for (int row = 0; row < idOf.length; row++) {
+            postings[next[idOf[row]]++] = row;
+        }
+        for (int s : start) out.writeInt(s);
+        for (int p : postings) out.writeInt(p);
+    }
+
+    private static int intern(String s, Map<String, Integer> ids, List<String> names) {
+        String key = s == null ? "" : s;
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = names.size();
+            ids.put(key, id);
+            names.add(key);
+        }
+        return id;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    long sourceBytes() {
+        return sourceBytes;
+    }
+
+    Rows rows(BorrowHistoryFile.Filter filter) {
+        return new Rows(filter);
+    }
+
+    /** Forward-only walk over the rows matching a filter, in due-date order. */
+    final class Rows {
+        private final int userId;
+        private final int isbnId;
+        private final int from;
+        private final int to;
+
+        // المصدر: إما posting list (مستخدم أو ISBN) أو مجال صفوف
+        private final int postingsAt;
+        private int position;
+        private final int end;
+        private int row = -1;
+
+        private Rows(BorrowHistoryFile.Filter filter) {
+            this.userId = filter.username() == null ? -1 : find(filter.username());
+            this.isbnId = filter.isbn() == null ? -1 : find(filter.isbn());
+            boolean ranged = filter.dueFrom() != null || filter.dueTo() != null;
+            this.from = filter.dueFrom() == null ? (ranged ? NO_DATE + 1 : NO_DATE) : epochDay(filter.dueFrom());
+            this.to = filter.dueTo() == null ? Integer.MAX_VALUE : epochDay(filter.dueTo());
+
+            boolean missing = (filter.username() != null && userId < 0) || (filter.isbn() != null && isbnId < 0);
+            if (missing || from > to) {
+                postingsAt = -1;
+                position = 0;
+                end = 0;
+            } else if (userId >= 0 || isbnId >= 0) {
+                // أقصر posting list، والشرط الثاني بينفحص على الصف
+                int userLength = userId < 0 ? Integer.MAX_VALUE : postingLength(userIndexAt, userId);
+                int isbnLength = isbnId < 0 ? Integer.MAX_VALUE : postingLength(isbnIndexAt, isbnId);
+                boolean byUser = userLength <= isbnLength;
+                int indexAt = byUser ? userIndexAt : isbnIndexAt;
+                int id = byUser ? userId : isbnId;
+                postingsAt = byUser ? userPostingsAt : isbnPostingsAt;
+                int first = map.getInt(indexAt + 4 * id);
+                int last = map.getInt(indexAt + 4 * (id + 1));
+                position = firstPostingAtOrAfter(postingsAt, first, last, lowerBound(from));
+                end = last;
+            } else {
+                postingsAt = -1;
+                position = lowerBound(from);
+                end = upperBound(to);
+            }
+        }
+
+        boolean next() {
+            while (position < end) {
+                int candidate = postingsAt < 0 ? position : map.getInt(postingsAt + 4 * position);
+                position++;
+                int due = field(candidate, 2);
+                if (due > to) {
+                    // الصفوف مرتبة حسب التاريخ، فما في إشي بعدها
+                    position = end;
+                    break;
+                }
+                if (due < from) continue;
+                if (userId >= 0 && field(candidate, 0) != userId) continue;
+                if (isbnId >= 0 && field(candidate, 1) != isbnId) continue;
+                row = candidate;
+                return true;
+            }
+            row = -1;
+            return false;
+        }
+
+        int dueEpochDay() {
+            return field(row, 2);
+        }
+
+        String username() {
+            return string(field(row, 0));
+        }
+
+        String isbn() {
+            return string(field(row, 1));
+        }
+
+        LocalDate dueDate() {
+            return date(field(row, 2));
+        }
+
+        LocalDate returnDate() {
+            return date(field(row, 3));
+        }
+
+        boolean returned() {
+            return (field(row, 4) & RETURNED) != 0;
+        }
+    }
+
+    private int field(int row, int field) {
+        return map.getInt(HEADER + ROW * row + 4 * field);
+    }
+
+    private int postingLength(int indexAt, int id) {
+        return map.getInt(indexAt + 4 * (id + 1)) - map.getInt(indexAt + 4 * id);
+    }
+
+    // أول صف تاريخه >= day
+    private int lowerBound(int day) {
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (field(mid, 2) < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // أول صف تاريخه > day
+    private int upperBound(int day) {
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (field(mid, 2) <= day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // الـpostings رقم صف تصاعدي، فبنقفز لأول صف داخل مجال التاريخ
+    private int firstPostingAtOrAfter(int postingsAt, int first, int last, int row) {
+        int lo = first;
+        int hi = last;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (map.getInt(postingsAt + 4 * mid) < row) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int find(String s) {
+        int lo = 0;
+        int hi = strings - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = string(mid).compareTo(s);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private String string(int id) {
+        String s = decoded[id];
+        if (s == null) {
+            int start = map.getInt(stringIndexAt + 4 * id);
+            int length = map.getInt(stringIndexAt + 4 * (id + 1)) - start;
+            byte[] bytes = new byte[length];
+            map.get(stringDataAt + start, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            decoded[id] = s;
+        }
+        return s;
+    }
+
+    static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    // زي epochDay(r.getDueDate()) بس بدون ما ينعمل LocalDate لكل سجل
+    static int dueDay(BorrowRecord r) {
+        return r.hasDueDate() ? r.getDueEpochDay() : NO_DATE;
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
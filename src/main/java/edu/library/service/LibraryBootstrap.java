@@ -0,0 +1,260 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.time.SystemTimeProvider;
+import edu.library.domain.time.TimeProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the four stores (fines, borrow records, users, media) at the same time, each on its
+ * own thread. The services are wired together first without touching their files, so cold
+ * start takes as long as the slowest file instead of the sum of all of them.
+ * {@link MediaService#updateFinesOnStartup()} runs only after media, records and fines are in.
+ * With {@link #enableSnapshots} the stores come from one binary snapshot instead, as long as
+ * none of the text files changed since it was written.
+ */
+public class LibraryBootstrap {
+
+    public static final String FINES = "fines";
+    public static final String RECORDS = "records";
+    public static final String USERS = "users";
+    public static final String MEDIA = "media";
+    public static final String FINES_UPDATE = "fines-update";
+    public static final String SNAPSHOT = "snapshot";
+
+    private final FineService fineService;
+    private final BorrowRecordService borrowRecordService;
+    private final AuthService authService;
+    private final MediaService mediaService;
+    private final List<Path> textFiles;
+
+    private final Map<String, Duration> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private Duration total = Duration.ZERO;
+    private boolean started;
+
+    // null = بدون snapshot (الافتراضي)
+    private Path snapshotPath;
+    private long snapshotPeriodMillis;
+    private boolean restoredFromSnapshot;
+    private ScheduledExecutorService snapshotTimer;
+    private Thread shutdownSnapshot;
+    private final Object snapshotLock = new Object();
+
+    public LibraryBootstrap() {
+        this("media.txt",
+                FineService.resolveDefault("borrow_records.txt"),
+                FineService.resolveDefault("fines.txt"),
+                FineService.resolveDefault("users.txt"),
+                new SystemTimeProvider(),
+                new FineCalculator());
+    }
+
+    public LibraryBootstrap(String mediaPath, String recordsPath, String finesPath, String usersPath) {
+        this(mediaPath, recordsPath, finesPath, usersPath, new SystemTimeProvider(), new FineCalculator());
+    }
+
+    public LibraryBootstrap(String mediaPath,
+                            String recordsPath,
+                            String finesPath,
+                            String usersPath,
+                            TimeProvider timeProvider,
+                            FineCalculator fineCalculator) {
+        this.fineService = new FineService(Path.of(finesPath), false);
+        this.borrowRecordService = new BorrowRecordService(recordsPath,
+                BorrowRecordService.DEFAULT_COMPACT_EVERY, BorrowRecordService.DEFAULT_ARCHIVE_AFTER_DAYS,
+                timeProvider, false);
+        this.authService = new AuthService(usersPath, fineService, false);
+        this.mediaService = new MediaService(mediaPath, borrowRecordService, fineService,
+                timeProvider, fineCalculator, false);
+        this.textFiles = List.of(Path.of(mediaPath), Path.of(recordsPath),
+                Path.of(borrowRecordService.returnsPath()), Path.of(finesPath), Path.of(usersPath));
+    }
+
+    /**
+     * Restores from {@code snapshotPath} on {@link #start()} when it is still current, and writes
+     * it again every {@code periodMillis} (0 = only on {@link #close()} and at JVM shutdown).
+     */
+    public synchronized LibraryBootstrap enableSnapshots(String snapshotPath, long periodMillis) {
+        if (this.snapshotPath != null) return this;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.snapshotPeriodMillis = Math.max(0, periodMillis);
+        if (started) scheduleSnapshots();
+        return this;
+    }
+
+    /**
+     * Loads everything and blocks until the stores are ready. A failure in any store (for
+     * example a malformed fines.txt) is rethrown here as it would be from the constructor.
+     */
+    public synchronized LibraryBootstrap start() {
+        if (started) return this;
+
+        ExecutorService pool = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "library-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        long begin = System.nanoTime();
+        try {
+            LibrarySnapshot.Contents saved = readSnapshot();
+            restoredFromSnapshot = saved != null;
+
+            CompletableFuture<Void> fines = timed(FINES, saved == null
+                    ? fineService::load : () -> fineService.restore(saved.balances()), pool);
+            CompletableFuture<Void> records = timed(RECORDS, saved == null
+                    ? borrowRecordService::loadRecords : () -> borrowRecordService.restore(saved.records()), pool);
+            CompletableFuture<Void> users = timed(USERS, saved == null
+                    ? authService::loadUsersFromFile : () -> authService.restore(saved.users()), pool);
+            CompletableFuture<Void> media = timed(MEDIA, saved == null
+                    ? mediaService::load : () -> mediaService.restore(saved.media()), pool);
+
+            // الغرامات بتنحسب من السجلات والمواد، وبتنضاف فوق الرصيد المحمّل
+            CompletableFuture<Void> finesUpdate = CompletableFuture.allOf(fines, records, media)
+                    .thenCompose(ignored -> timed(FINES_UPDATE, mediaService::updateFinesOnStartup, pool));
+
+            CompletableFuture.allOf(users, finesUpdate).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        total = Duration.ofNanos(System.nanoTime() - begin);
+        started = true;
+        if (snapshotPath != null) scheduleSnapshots();
+        return this;
+    }
+
+    private LibrarySnapshot.Contents readSnapshot() {
+        if (snapshotPath == null) return null;
+        long begin = System.nanoTime();
+        LibrarySnapshot.Contents saved = LibrarySnapshot.read(snapshotPath, textFiles, mediaService);
+        timings.put(SNAPSHOT, Duration.ofNanos(System.nanoTime() - begin));
+        return saved;
+    }
+
+    private void scheduleSnapshots() {
+        if (snapshotPeriodMillis > 0 && snapshotTimer == null) {
+            snapshotTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotTimer.scheduleWithFixedDelay(this::writeSnapshot,
+                    snapshotPeriodMillis, snapshotPeriodMillis, TimeUnit.MILLISECONDS);
+        }
+        if (shutdownSnapshot == null) {
+            shutdownSnapshot = new Thread(this::writeSnapshot, "library-snapshot-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownSnapshot);
+        }
+    }
+
+    /**
+     * Writes the snapshot now. Returns false when snapshots are off, the stores are not loaded
+     * yet, a text file changed while copying (the next tick retries) or the write failed.
+     */
+    public boolean writeSnapshot() {
+        Path target;
+        synchronized (this) {
+            if (snapshotPath == null || !started) return false;
+            target = snapshotPath;
+        }
+        synchronized (snapshotLock) {
+            try {
+                return LibrarySnapshot.write(target, textFiles, mediaService, authService,
+                        fineService, borrowRecordService);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error writing snapshot: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // بيوقف المؤقت وبيكتب آخر snapshot
+    public void close() {
+        synchronized (this) {
+            if (snapshotTimer != null) {
+                snapshotTimer.shutdown();
+                snapshotTimer = null;
+            }
+            if (shutdownSnapshot != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownSnapshot);
+                } catch (IllegalStateException e) {
+                    // already shutting down, the hook runs anyway
+                }
+                shutdownSnapshot = null;
+            }
+        }
+        writeSnapshot();
+    }
+
+    public synchronized boolean isRestoredFromSnapshot() {
+        return restoredFromSnapshot;
+    }
+
+    private CompletableFuture<Void> timed(String store, Runnable load, ExecutorService pool) {
+        return CompletableFuture.runAsync(() -> {
+            long begin = System.nanoTime();
+            try {
+                load.run();
+            } finally {
+                timings.put(store, Duration.ofNanos(System.nanoTime() - begin));
+            }
+        }, pool);
+    }
+
+    public FineService getFineService() { return fineService; }
+    public BorrowRecordService getBorrowRecordService() { return borrowRecordService; }
+    public AuthService getAuthService() { return authService; }
+    public MediaService getMediaService() { return mediaService; }
+
+    // كل store مع الوقت اللي أخذه، بترتيب ما خلصوا
+    public Map<String, Duration> getTimings() {
+        synchronized (timings) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+        }
+    }
+
+    // wall-clock للتحميل كله؛ لازم يكون قريب من أبطأ store مش مجموعهم
+    public synchronized Duration getTotal() {
+        return total;
+    }
+
+    /**
+     * Loads the library once and prints {@link #timingReport()}, to measure cold start without
+     * going through the menus. Takes the media, records, fines and users paths, or uses the
+     * default files when run without arguments.
+     */
+    public static void main(String[] args) {
+        LibraryBootstrap bootstrap = args.length >= 4
+                ? new LibraryBootstrap(args[0], args[1], args[2], args[3])
+                : new LibraryBootstrap();
+        System.out.println(bootstrap.start().timingReport());
+        bootstrap.close();
+    }
+
+    public String timingReport() {
+        StringBuilder sb = new StringBuilder("Startup: ").append(getTotal().toMillis()).append(" ms (");
+        String sep = "";
+        for (Map.Entry<String, Duration> e : getTimings().entrySet()) {
+            sb.append(sep).append(e.getKey()).append(' ').append(e.getValue().toMillis()).append(" ms");
+            sep = ", ";
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,270 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import edu.library.domain.model.Roles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary image of the catalog, users, fine balances and in-memory loans. It is read
+ * back with one bulk channel read. Each text file it was taken from is stamped with its size
+ * and modification time. If any text file (or media journal segment) changed since, the
+ * snapshot is stale and callers load the text files instead.
+ *
+ * <pre>
+ * int magic, int version, long createdMillis
+ * int n, n x (string path, long size, long modifiedMicros)
+ * media, users, balances, records sections (int count + rows)
+ * int crc32 of everything before it
+ * </pre>
+ */
+final class LibrarySnapshot {
+
+    static final int MAGIC = 0x4C534E50; // "LSNP"
+    static final int VERSION = 1;
+
+    private static final byte BOOK = 0;
+    private static final byte CD_TYPE = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    record Contents(List<Media> media, List<Roles> users, Map<String, Integer> balances,
+                    List<BorrowRecord> records) {
+    }
+
+    private record Stamp(String path, long size, long modifiedMicros) {
+    }
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Writes the snapshot atomically (temp file + rename). Returns false without writing when
+     * one of the text files changed while the state was being copied; the next call retries.
+     */
+    static boolean write(Path target, List<Path> sources, MediaService media, AuthService auth,
+                         FineService fines, BorrowRecordService records) throws IOException {
+        media.flushPendingWrites();
+        fines.flush();
+
+        List<Stamp> before = stamps(sources, media);
+        Contents contents = new Contents(media.snapshotMedia(), auth.snapshotUsers(),
+                fines.snapshotBalances(), records.snapshotRecords());
+        List<Stamp> after = stamps(sources, media);
+        // لو ملف تغيّر وإحنا بننسخ، الـstamps ما بتطابق البيانات
+        if (!before.equals(after)) return false;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+
+        out.writeInt(after.size());
+        for (Stamp s : after) {
+            writeString(out, s.path());
+            out.writeLong(s.size());
+            out.writeLong(s.modifiedMicros());
+        }
+
+        out.writeInt(contents.media().size());
+        for (Media m : contents.media()) {
+            out.writeByte(m instanceof CD ? CD_TYPE : BOOK);
+            writeString(out, m.getTitle());
+            writeString(out, m.getAuthor());
+            writeString(out, m.getIsbn());
+            out.writeInt(m.getTotalCopies());
+            out.writeInt(m.getAvailableCopies());
+            out.writeInt(epochDay(m.getDueDate()));
+        }
+
+        out.writeInt(contents.users().size());
+        for (Roles u : contents.users()) {
+            writeString(out, u.getUsername());
+            writeString(out, u.getPassword());
+            writeString(out, u.getRoleName());
+            writeString(out, u.getEmail());
+        }
+
+        out.writeInt(contents.balances().size());
+        for (Map.Entry<String, Integer> e : contents.balances().entrySet()) {
+            writeString(out, e.getKey());
+            out.writeInt(e.getValue());
+        }
+
+        out.writeInt(contents.records().size());
+        for (BorrowRecord r : contents.records()) {
+            writeString(out, r.getUsername());
+            writeString(out, r.getIsbn());
+            out.writeInt(r.hasDueDate() ? r.getDueEpochDay() : NO_DATE);
+            out.writeBoolean(r.isReturned());
+            out.writeInt(epochDay(r.getReturnDate()));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Reads the snapshot, or returns null when it is missing, corrupt, from another format
+     * version or older than the text files it was taken from.
+     */
+    static Contents read(Path source, List<Path> sources, MediaService media) {
+        if (!Files.isRegularFile(source)) return null;
+
+        try {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < 4 || size > Integer.MAX_VALUE) return stale(source, "bad size");
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // قراءة وحدة كبيرة؛ الحلقة بس لو القناة رجعت أقل
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() < 4) return stale(source, "truncated");
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) return stale(source, "checksum mismatch");
+            buffer.limit(buffer.limit() - 4);
+
+            if (buffer.getInt() != MAGIC) return stale(source, "not a library snapshot");
+            if (buffer.getInt() != VERSION) return stale(source, "unsupported version");
+            buffer.getLong();
+
+            int stampCount = buffer.getInt();
+            List<Stamp> saved = new ArrayList<>(stampCount);
+            for (int i = 0; i < stampCount; i++) {
+                saved.add(new Stamp(readString(buffer), buffer.getLong(), buffer.getLong()));
+            }
+            if (!saved.equals(stamps(sources, media))) return stale(source, "text files changed");
+
+            int mediaCount = buffer.getInt();
+            List<Media> items = new ArrayList<>(mediaCount);
+            for (int i = 0; i < mediaCount; i++) {
+                byte type = buffer.get();
+                String title = readString(buffer);
+                String author = readString(buffer);
+                String isbn = readString(buffer);
+                int total = buffer.getInt();
+                int available = buffer.getInt();
+                Media m = type == CD_TYPE
+                        ? new CD(title, author, isbn, available, total)
+                        : new Book(title, author, isbn, available, total);
+                m.setDueDate(date(buffer.getInt()));
+                items.add(m);
+            }
+
+            int userCount = buffer.getInt();
+            List<Roles> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                users.add(new Roles(readString(buffer), readString(buffer), readString(buffer), readString(buffer)));
+            }
+
+            int balanceCount = buffer.getInt();
+            Map<String, Integer> balances = new HashMap<>(balanceCount * 2);
+            for (int i = 0; i < balanceCount; i++) {
+                balances.put(readString(buffer), buffer.getInt());
+            }
+
+            int recordCount = buffer.getInt();
+            List<BorrowRecord> records = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                String username = readString(buffer);
+                String isbn = readString(buffer);
+                LocalDate due = date(buffer.getInt());
+                boolean returned = buffer.get() != 0;
+                records.add(new BorrowRecord(username, isbn, due, returned, date(buffer.getInt())));
+            }
+            if (buffer.hasRemaining()) return stale(source, "trailing data");
+
+            return new Contents(items, users, balances, records);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return stale(source, e.toString());
+        }
+    }
+
+    private static Contents stale(Path source, String reason) {
+        System.out.println("Ignoring snapshot " + source + ": " + reason);
+        return null;
+    }
+
+    // media.txt وكل ملفات الـjournal تبعته، لأنهم مع بعض بيحددوا حالة الكتالوج
+    private static List<Stamp> stamps(List<Path> sources, MediaService media) throws IOException {
+        List<Stamp> result = new ArrayList<>();
+        for (Path p : sources) {
+            result.add(stamp(p));
+        }
+        for (var segment : MediaJournal.segmentFiles(media.getFilePath())) {
+            result.add(stamp(segment.toPath()));
+        }
+        return result;
+    }
+
+    private static Stamp stamp(Path p) throws IOException {
+        String name = p.toAbsolutePath().normalize().toString();
+        if (!Files.exists(p)) return new Stamp(name, -1, -1);
+        return new Stamp(name, Files.size(p), Files.getLastModifiedTime(p).to(TimeUnit.MICROSECONDS));
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+}
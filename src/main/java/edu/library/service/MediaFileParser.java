@@ -0,0 +1,252 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Streams media.txt through a fixed NIO buffer and decodes it as UTF-8. Field boundaries are
+ * found by scanning for ';', so the only Strings created per line are title, author and ISBN.
+ * Numbers and dates are read straight from the chars with {@link Character#digit}, so
+ * Arabic-Indic digits work too. Lines are accepted and rejected by the same rules as
+ * {@link MediaService#parseMediaLine(String)}, except that a bad due date skips the line
+ * instead of failing the whole load.
+ */
+final class MediaFileParser {
+
+    private static final int BUFFER = 1 << 16;
+    private static final int FIELDS = 7;
+
+    private char[] line = new char[256];
+    private int length;
+    private final int[] cuts = new int[FIELDS + 1];
+
+    private int lines;
+    private int loaded;
+    private int blank;
+    private int wrongFieldCount;
+    private int badNumber;
+    private int badDate;
+    private int unknownType;
+
+    private MediaFileParser() {
+    }
+
+    static MediaLoadStats parse(Path file, Consumer<Media> sink) throws IOException {
+        MediaFileParser parser = new MediaFileParser();
+        if (Files.exists(file)) {
+            parser.run(file, sink);
+        }
+        return parser.stats();
+    }
+
+    private void run(Path file, Consumer<Media> sink) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER);
+        CharBuffer chars = CharBuffer.allocate(BUFFER);
+        boolean afterCr = false;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(bytes) < 0;
+                bytes.flip();
+                decoder.decode(bytes, chars, eof);
+                if (eof) decoder.flush(chars);
+                bytes.compact();
+
+                chars.flip();
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    // نفس قواعد readLine: \n أو \r أو \r\n
+                    if (c == '\n' && afterCr) {
+                        afterCr = false;
+                        continue;
+                    }
+                    afterCr = c == '\r';
+                    if (c == '\n' || c == '\r') {
+                        endLine(sink);
+                    } else {
+                        append(c);
+                    }
+                }
+                chars.clear();
+            }
+        }
+        if (length > 0) endLine(sink);
+    }
+
+    private void append(char c) {
+        if (length == line.length) line = Arrays.copyOf(line, length * 2);
+        line[length++] = c;
+    }
+
+    private void endLine(Consumer<Media> sink) {
+        lines++;
+        Media m = parseLine();
+        if (m != null) {
+            loaded++;
+            sink.accept(m);
+        }
+        length = 0;
+    }
+
+    private Media parseLine() {
+        int start = 0;
+        int end = length;
+        while (start < end && line[start] <= ' ') start++;
+        while (end > start && line[end - 1] <= ' ') end--;
+        if (start == end) {
+            blank++;
+            return null;
+        }
+
+        int fields = 0;
+        cuts[fields++] = start - 1;
+        for (int i = start; i < end; i++) {
+            if (line[i] == ';') {
+                if (fields == FIELDS) {
+                    wrongFieldCount++;
+                    return null;
+                }
+                cuts[fields++] = i;
+            }
+        }
+        if (fields != FIELDS) {
+            wrongFieldCount++;
+            return null;
+        }
+        cuts[FIELDS] = end;
+
+        boolean book = is(0, "BOOK");
+        if (!book && !is(0, "CD")) {
+            unknownType++;
+            return null;
+        }
+
+        long total = parseInt(4);
+        long available = parseInt(5);
+        if (total == Long.MIN_VALUE || available == Long.MIN_VALUE) {
+            badNumber++;
+            return null;
+        }
+
+        LocalDate due;
+        try {
+            due = parseDate(6);
+        } catch (DateTimeException e) {
+            badDate++;
+            return null;
+        }
+
+        String title = field(1);
+        String author = field(2);
+        String isbn = field(3);
+        Media m = book ? new Book(title, author, isbn, (int) total) : new CD(title, author, isbn, (int) total);
+        m.setAvailableCopies((int) available);
+        m.setDueDate(due);
+        return m;
+    }
+
+    private int from(int field) {
+        return cuts[field] + 1;
+    }
+
+    private int to(int field) {
+        return cuts[field + 1];
+    }
+
+    private String field(int field) {
+        return new String(line, from(field), to(field) - from(field));
+    }
+
+    private boolean is(int field, String expected) {
+        int from = from(field);
+        if (to(field) - from != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toUpperCase(line[from + i]) != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Long.MIN_VALUE = مش رقم صحيح (نفس شروط Integer.parseInt بعد trim)
+    private long parseInt(int field) {
+        int i = from(field);
+        int end = to(field);
+        while (i < end && line[i] <= ' ') i++;
+        while (end > i && line[end - 1] <= ' ') end--;
+        if (i == end) return Long.MIN_VALUE;
+
+        boolean negative = line[i] == '-';
+        if (negative || line[i] == '+') i++;
+        if (i == end) return Long.MIN_VALUE;
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(line[i], 10);
+            if (digit < 0) return Long.MIN_VALUE;
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) return Long.MIN_VALUE;
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    private LocalDate parseDate(int field) {
+        int i = from(field);
+        int end = to(field);
+        while (i < end && line[i] <= ' ') i++;
+        while (end > i && line[end - 1] <= ' ') end--;
+        if (i == end) return null;
+        if (end - i == 4 && matches(i, "NULL")) return null;
+
+        // yyyy-MM-dd بدون ما نعمل String
+        if (end - i == 10 && line[i + 4] == '-' && line[i + 7] == '-') {
+            int year = digits(i, i + 4);
+            int month = digits(i + 5, i + 7);
+            int day = digits(i + 8, i + 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(new String(line, i, end - i));
+    }
+
+    private boolean matches(int from, String upper) {
+        for (int k = 0; k < upper.length(); k++) {
+            if (Character.toUpperCase(line[from + k]) != upper.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private int digits(int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(line[i], 10);
+            if (digit < 0) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private MediaLoadStats stats() {
+        return new MediaLoadStats(lines, loaded, blank, wrongFieldCount, badNumber, badDate, unknownType);
+    }
+}
@@ -0,0 +1,18 @@
+package edu.library.service;
+
+/**
+ * Callbacks for {@link MediaService#importMedia}. Rejected rows are handed over one at a time and
+ * not kept, so a feed of any size can be imported.
+ */
+public interface MediaImportListener {
+
+    MediaImportListener NONE = new MediaImportListener() { };
+
+    /** Called every {@link MediaImporter#PROGRESS_EVERY} rows and once at the end. */
+    default void progress(MediaImportReport soFar) {
+    }
+
+    /** {@code row} is 1-based; for files it counts the header line too. */
+    default void rejected(long row, String raw, String reason) {
+    }
+}
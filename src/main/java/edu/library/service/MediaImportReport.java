@@ -0,0 +1,12 @@
+package edu.library.service;
+
+/**
+ * Running totals of a bulk import: rows read, titles added, rows merged into a title that was
+ * already in the catalog (or earlier in the same feed), and rows rejected.
+ */
+public record MediaImportReport(long rows, long added, long merged, long rejected) {
+
+    public long accepted() {
+        return added + merged;
+    }
+}
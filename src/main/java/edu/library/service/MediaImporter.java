@@ -0,0 +1,222 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams a supplier feed into a {@link MediaService}. A row is validated, then either added as
+ * a new title or merged into the title with the same ISBN (case-insensitive) by adding its
+ * copies. Only the current row is held in memory. The caller writes the catalog once when the
+ * import is done.
+ *
+ * <p>Feed files have one title per line: {@code type,title,author,isbn,copies}. Files ending in
+ * {@code .tsv} are tab-separated, everything else is comma-separated with optional double
+ * quotes ({@code ""} inside quotes is a literal quote). A first line starting with
+ * {@code type} is treated as a header.
+ */
+final class MediaImporter {
+
+    static final int PROGRESS_EVERY = 10_000;
+    private static final int COLUMNS = 5;
+
+    private final MediaService service;
+    private final MediaImportListener listener;
+
+    private long rows;
+    private long added;
+    private long merged;
+    private long rejected;
+
+    MediaImporter(MediaService service, MediaImportListener listener) {
+        this.service = service;
+        this.listener = listener == null ? MediaImportListener.NONE : listener;
+    }
+
+    void run(Path feed) throws IOException {
+        char delimiter = feed.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        try (BufferedReader in = Files.newBufferedReader(feed, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                rows++;
+                if (line.isBlank() || (rows == 1 && isHeader(line))) {
+                    tick();
+                    continue;
+                }
+                try {
+                    offer(parseRow(line, delimiter), line);
+                } catch (IllegalArgumentException e) {
+                    reject(line, e.getMessage());
+                }
+                tick();
+            }
+        }
+    }
+
+    void run(Iterator<? extends Media> feed) {
+        while (feed.hasNext()) {
+            Media m = feed.next();
+            rows++;
+            if (m == null) {
+                reject("null", "missing item");
+            } else {
+                offer(m, null);
+            }
+            tick();
+        }
+    }
+
+    // raw == null: العنصر جاي من Iterator، وبنعمله سطر بس لو انرفض
+    private void offer(Media m, String raw) {
+        String problem = validate(m);
+        if (problem != null) {
+            reject(m, raw, problem);
+            return;
+        }
+
+        Media existing = service.findByIsbn(m.getIsbn());
+        if (existing == null) {
+            service.addImported(m);
+            added++;
+            return;
+        }
+        // instanceof مش getClass: بالـcolumnar mode العنصر المخزّن subclass من Book/CD
+        if ((existing instanceof CD) != (m instanceof CD)) {
+            reject(m, raw, "ISBN already used by a " + typeName(existing));
+            return;
+        }
+        if ((long) existing.getTotalCopies() + m.getTotalCopies() > Integer.MAX_VALUE) {
+            reject(m, raw, "too many copies");
+            return;
+        }
+        existing.addCopies(m.getTotalCopies(), m.getAvailableCopies());
+        merged++;
+    }
+
+    // نفس الحقول اللي بتنكتب بـmedia.txt، فممنوع ';' أو سطر جديد جواتها
+    private static String validate(Media m) {
+        if (!(m instanceof Book) && !(m instanceof CD)) return "unknown type";
+        if (m.getTitle() == null || m.getTitle().isBlank()) return "missing title";
+        if (m.getIsbn() == null || m.getIsbn().isBlank()) return "missing ISBN";
+        if (m.getTotalCopies() <= 0) return "copies must be positive";
+        if (m.getAvailableCopies() < 0 || m.getAvailableCopies() > m.getTotalCopies()) return "bad available copies";
+        if (unsafe(m.getTitle()) || unsafe(m.getAuthor()) || unsafe(m.getIsbn())) return "field contains ';' or a line break";
+        return null;
+    }
+
+    private static boolean unsafe(String field) {
+        return field != null && (field.indexOf(';') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0);
+    }
+
+    static Media parseRow(String line, char delimiter) {
+        List<String> fields = split(line, delimiter);
+        if (fields.size() != COLUMNS) {
+            throw new IllegalArgumentException("expected " + COLUMNS + " columns, found " + fields.size());
+        }
+
+        String type = fields.get(0).trim();
+        String title = fields.get(1).trim();
+        String author = fields.get(2).trim();
+        String isbn = fields.get(3).trim();
+        int copies;
+        try {
+            copies = Integer.parseInt(fields.get(4).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad copies: " + fields.get(4).trim());
+        }
+        if (copies <= 0) throw new IllegalArgumentException("copies must be positive");
+
+        if (type.equalsIgnoreCase("BOOK")) return new Book(title, author, isbn, copies);
+        if (type.equalsIgnoreCase("CD")) return new CD(title, author, isbn, copies);
+        throw new IllegalArgumentException("unknown type: " + type);
+    }
+
+    // عكس parseRow: الصف اللي بيكتبه exportMedia بينقرأ هون زي ما هو
+    static String formatRow(Media m) {
+        return (m instanceof CD ? "CD" : "BOOK") + ',' + csv(m.getTitle()) + ',' + csv(m.getAuthor())
+                + ',' + csv(m.getIsbn()) + ',' + m.getTotalCopies();
+    }
+
+    private static String csv(String field) {
+        if (field == null) return "";
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.equals(field.trim())) return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    private static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        if (delimiter == '\t') {
+            for (String f : line.split("\t", -1)) fields.add(f);
+            return fields;
+        }
+
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.toString().isBlank()) {
+                field.setLength(0);
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isHeader(String line) {
+        String start = line.stripLeading();
+        return start.regionMatches(true, 0, "type", 0, 4);
+    }
+
+    private static String typeName(Media m) {
+        return m instanceof Book ? "book" : m instanceof CD ? "CD" : "media item";
+    }
+
+    private void reject(Media m, String raw, String reason) {
+        reject(raw != null ? raw : MediaService.formatMediaLine(m), reason);
+    }
+
+    private void reject(String raw, String reason) {
+        rejected++;
+        listener.rejected(rows, raw, reason);
+    }
+
+    private void tick() {
+        if (rows % PROGRESS_EVERY == 0) listener.progress(report());
+    }
+
+    MediaImportReport finish() {
+        MediaImportReport report = report();
+        listener.progress(report);
+        return report;
+    }
+
+    private MediaImportReport report() {
+        return new MediaImportReport(rows, added, merged, rejected);
+    }
+}
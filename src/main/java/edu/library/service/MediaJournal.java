@@ -0,0 +1,185 @@
+package edu.library.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only journal kept next to the media snapshot as numbered segment files
+ * ({@code media.txt.journal.1}, {@code .2}, ...). Compaction seals the current segment,
+ * writes a fresh snapshot on a background thread and then drops the sealed segments.
+ *
+ * <p>Before the new snapshot replaces the old one, the number of the last sealed segment is
+ * written to {@code media.txt.journal-compacted}. If the process stops before the sealed
+ * segments are deleted, {@link #readPending} skips them, so no entry is applied twice.
+ *
+ * <p>Appends and compaction are synchronized; the segment counters are only touched there.
+ */
+class MediaJournal {
+
+    static final String ADD = "ADD";
+    static final String DELETE = "DEL";
+    static final String BORROW = "BORROW";
+    static final String RETURN = "RETURN";
+    static final String QUANTITY = "QTY";
+
+    private static final String COMPACTED = ".journal-compacted";
+
+    private final String snapshotPath;
+    private final int compactEvery;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "media-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int segment;
+    private int entriesSinceCompaction;
+
+    MediaJournal(String snapshotPath, int compactEvery) {
+        this.snapshotPath = snapshotPath;
+        this.compactEvery = Math.max(1, compactEvery);
+        // الـmarker ممكن يضل بعد ما انحذفت الـsegments اللي بيغطيها، فما بنرجع نستخدم أرقامها
+        this.segment = Math.max(lastSegment(snapshotPath), compactedUpTo(snapshotPath)) + 1;
+    }
+
+    void append(String entry) {
+        appendAll(List.of(entry));
+    }
+
+    // دفعة كاملة بفتحة ملف وحدة
+    synchronized void appendAll(List<String> entries) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(segmentFile(snapshotPath, segment), true))) {
+            for (String entry : entries) {
+                writer.write(entry);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing media journal: " + e.getMessage());
+        }
+        entriesSinceCompaction += entries.size();
+    }
+
+    synchronized boolean shouldCompact() {
+        return entriesSinceCompaction >= compactEvery;
+    }
+
+    // الـsnapshot لازم يكون ماخد من الذاكرة قبل ما ننادي هاي، والكتابة بتصير بالخلفية
+    synchronized Future<?> compact(List<String> snapshotLines) {
+        int sealed = segment++;
+        entriesSinceCompaction = 0;
+        return compactor.submit(() -> {
+            writeSnapshot(snapshotPath, snapshotLines, sealed);
+            deleteSegments(snapshotPath, sealed);
+        });
+    }
+
+    void close() {
+        compactor.shutdown();
+    }
+
+    static List<String> readPending(String snapshotPath) {
+        List<String> entries = new ArrayList<>();
+        int covered = compactedUpTo(snapshotPath);
+        for (File file : segments(snapshotPath).tailMap(covered, false).values()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) entries.add(line);
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading media journal: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    // الترتيب: الـsnapshot كامل بـtmp، بعدين الـmarker، بعدين الـmove اللي بيخلّيه ساري
+    private static void writeSnapshot(String snapshotPath, List<String> lines, int sealed) {
+        File target = new File(snapshotPath);
+        File tmp = new File(snapshotPath + ".tmp");
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp))) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            File marker = new File(snapshotPath + COMPACTED + ".tmp");
+            Files.writeString(marker.toPath(), Integer.toString(sealed));
+            Files.move(marker.toPath(), new File(snapshotPath + COMPACTED).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error saving media: " + e.getMessage());
+        }
+    }
+
+    static void deleteSegments(String snapshotPath, int upTo) {
+        for (var entry : segments(snapshotPath).entrySet()) {
+            if (entry.getKey() <= upTo && !entry.getValue().delete()) {
+                System.out.println("Could not delete media journal segment: " + entry.getValue());
+            }
+        }
+        // ما ضل segment تحت الرقم اللي بيغطيه، فالـmarker ما إله لزوم
+        if (segments(snapshotPath).headMap(upTo, true).isEmpty()) {
+            new File(snapshotPath + COMPACTED).delete();
+        }
+    }
+
+    // آخر segment موجود أصلاً بالـsnapshot؛ صفر لو ما في compaction انقطعت، أو لو انقطعت قبل
+    // ما الـsnapshot الجديد يتبدّل (الـtmp لسا موجود)
+    static int compactedUpTo(String snapshotPath) {
+        File marker = new File(snapshotPath + COMPACTED);
+        if (!marker.exists() || new File(snapshotPath + ".tmp").exists()) return 0;
+        try {
+            return Integer.parseInt(Files.readString(marker.toPath()).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static int lastSegment(String snapshotPath) {
+        TreeMap<Integer, File> all = segments(snapshotPath);
+        return all.isEmpty() ? 0 : all.lastKey();
+    }
+
+    static Collection<File> segmentFiles(String snapshotPath) {
+        return segments(snapshotPath).values();
+    }
+
+    private static File segmentFile(String snapshotPath, int number) {
+        return new File(snapshotPath + ".journal." + number);
+    }
+
+    private static TreeMap<Integer, File> segments(String snapshotPath) {
+        TreeMap<Integer, File> result = new TreeMap<>();
+        File snapshot = new File(snapshotPath).getAbsoluteFile();
+        File dir = snapshot.getParentFile();
+        String prefix = snapshot.getName() + ".journal.";
+        File[] files = dir == null ? null : dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (files == null) return result;
+
+        for (File f : files) {
+            try {
+                result.put(Integer.parseInt(f.getName().substring(prefix.length())), f);
+            } catch (NumberFormatException ignored) {
+                // مش ملف journal تبعنا
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package edu.library.service;
+
+/**
+ * Outcome of reading a media file: how many lines were seen, loaded, blank, and rejected for
+ * each reason.
+ */
+public record MediaLoadStats(int lines, int loaded, int blank, int wrongFieldCount,
+                             int badNumber, int badDate, int unknownType) {
+
+    public int malformed() {
+        return wrongFieldCount + badNumber + badDate + unknownType;
+    }
+}
@@ -0,0 +1,152 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.Media;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * One page of a catalog listing plus the cursor for the page after it. Pages are picked with a
+ * bounded heap, so a page of k items out of n costs O(n log k) and only those k items are
+ * sorted and formatted. A cursor holds the sort key and ISBN of the last item shown, so a
+ * title added or deleted between two pages does not shift what comes next.
+ *
+ * <p>{@link MediaService#listMedia} walks its sorted title/author indexes instead, so those
+ * pages cost O(log n + k).
+ */
+public final class MediaPage {
+
+    public enum Sort { TITLE, AUTHOR, ISBN }
+
+    private static final char SEP = '\u0001';
+
+    private final List<Media> items;
+    private final String nextCursor;
+
+    private MediaPage(List<Media> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @param type   {@code Book.class}, {@code CD.class} or null for everything
+     * @param cursor null for the first page, otherwise {@link #getNextCursor()} of the page before
+     */
+    public static MediaPage of(List<Media> source, Class<? extends Media> type, Sort sort,
+                               String cursor, int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        Sort by = sort == null ? Sort.TITLE : sort;
+
+        String[] after = decode(cursor, by);
+        Comparator<Media> order = order(by);
+
+        // heap فيه أكبر عنصر فوق، فبنضل ماسكين أصغر pageSize+1 بس
+        PriorityQueue<Media> best = new PriorityQueue<>(pageSize + 1, order.reversed());
+        for (Media m : source) {
+            if (m == null || (type != null && !type.isInstance(m))) continue;
+            if (after != null && compare(key(m, by), isbnKey(m), after[0], after[1]) <= 0) continue;
+            if (best.size() <= pageSize) {
+                best.add(m);
+            } else if (order.compare(m, best.peek()) < 0) {
+                best.poll();
+                best.add(m);
+            }
+        }
+
+        List<Media> page = new ArrayList<>(best);
+        page.sort(order);
+        String next = null;
+        if (page.size() > pageSize) {
+            page.remove(pageSize);
+            Media last = page.get(pageSize - 1);
+            next = by.name() + SEP + key(last, by) + SEP + isbnKey(last);
+        }
+        return new MediaPage(Collections.unmodifiableList(page), next);
+    }
+
+    // source مرتّب أصلاً وبادئ بعد الـcursor، فبناخذ أول pageSize+1 وبس
+    static MediaPage ofSorted(Iterable<Media> source, Class<? extends Media> type, Sort by, int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        List<Media> page = new ArrayList<>(Math.min(pageSize, 1024));
+        String next = null;
+        for (Media m : source) {
+            if (type != null && !type.isInstance(m)) continue;
+            if (page.size() == pageSize) {
+                Media last = page.get(pageSize - 1);
+                next = by.name() + SEP + key(last, by) + SEP + isbnKey(last);
+                break;
+            }
+            page.add(m);
+        }
+        return new MediaPage(Collections.unmodifiableList(page), next);
+    }
+
+    static Comparator<Media> order(Sort sort) {
+        return (a, b) -> compare(key(a, sort), isbnKey(a), key(b, sort), isbnKey(b));
+    }
+
+    private static int compare(String keyA, String isbnA, String keyB, String isbnB) {
+        int c = keyA.compareTo(keyB);
+        return c != 0 ? c : isbnA.compareTo(isbnB);
+    }
+
+    private static String key(Media m, Sort sort) {
+        String raw = switch (sort) {
+            case TITLE -> m.getTitle();
+            case AUTHOR -> m.getAuthor();
+            case ISBN -> m.getIsbn();
+        };
+        return MediaSortedIndex.normalize(raw);
+    }
+
+    private static String isbnKey(Media m) {
+        return MediaSortedIndex.normalize(m.getIsbn());
+    }
+
+    // {key, isbn} آخر عنصر بالصفحة اللي قبل، أو null للصفحة الأولى
+    static String[] decode(String cursor, Sort sort) {
+        if (cursor == null) return null;
+        String[] parts = cursor.split(String.valueOf(SEP), -1);
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor does not belong to a " + sort + " listing");
+        }
+        return new String[] {parts[1], parts[2]};
+    }
+
+    public List<Media> getItems() {
+        return items;
+    }
+
+    /** null on the last page. */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /** The page as the lines {@link MediaService#displayMedia()} prints, one per item. */
+    public String format() {
+        StringBuilder out = new StringBuilder(items.size() * 80);
+        for (Media m : items) {
+            appendListing(out, m);
+            out.append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    // بدل String.format لكل عنصر: نفس الشكل بس بدون parsing للـpattern كل مرة
+    static void appendListing(StringBuilder out, Media m) {
+        out.append(m instanceof Book ? "[Book]" : "[CD]")
+                .append(" | ").append(m.getTitle())
+                .append(" | ISBN: ").append(m.getIsbn())
+                .append(" | Available: ").append(m.getAvailableCopies())
+                .append('/').append(m.getTotalCopies())
+                .append(" | Due: ").append(m.getDueDate() != null ? m.getDueDate() : "None");
+    }
+}
@@ -0,0 +1,259 @@
+package edu.library.service;
+
+import edu.library.domain.model.Media;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Trigram index over lower-cased title/author/ISBN, plus bigrams for two-letter keywords.
+ * Candidates from the posting lists are re-checked with {@code contains}, so hits match the old
+ * substring scan exactly. A one-letter keyword still walks every document: its posting list
+ * would be most of the catalog anyway.
+ *
+ * <p>Ids follow catalog order, so a removed item's slot is not reused. Once more than half the
+ * slots are dead the index renumbers the live documents and rewrites the posting lists.
+ */
+class MediaSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final char FIELD_SEPARATOR = '\u0000';
+    // مفاتيح الـbigram فوق كل مفاتيح الـtrigram (3 حروف × 16 بت = 48 بت)
+    private static final long BIGRAM = 1L << 48;
+    private static final int COMPACT_MIN_DEAD = 64;
+
+    private List<Doc> docs = new ArrayList<>();
+    private final Map<Media, Integer> ids = new IdentityHashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private int liveCount;
+
+    private record Doc(Media media, String text, int titleEnd, int authorEnd) {
+    }
+
+    void add(Media media) {
+        if (media == null || ids.containsKey(media)) return;
+
+        String title = lower(media.getTitle());
+        String author = lower(media.getAuthor());
+        String isbn = lower(media.getIsbn());
+        String text = title + FIELD_SEPARATOR + author + FIELD_SEPARATOR + isbn;
+
+        int id = docs.size();
+        docs.add(new Doc(media, text, title.length(), title.length() + 1 + author.length()));
+        ids.put(media, id);
+        liveCount++;
+
+        for (long gram : grams(text)) {
+            postings.computeIfAbsent(gram, g -> new IntList()).append(id);
+        }
+    }
+
+    void remove(Media media) {
+        Integer id = ids.remove(media);
+        if (id == null) return;
+
+        Doc doc = docs.get(id);
+        for (long gram : grams(doc.text())) {
+            IntList list = postings.get(gram);
+            if (list == null) continue;
+            list.remove(id);
+            if (list.size == 0) postings.remove(gram);
+        }
+        docs.set(id, null);
+        liveCount--;
+
+        int dead = docs.size() - liveCount;
+        if (dead >= COMPACT_MIN_DEAD && dead * 2 > docs.size()) compact();
+    }
+
+    // الترتيب بيضل نفسه، فكل posting list بتضل مرتبة بعد ما نبدّل الأرقام
+    private void compact() {
+        int[] remap = new int[docs.size()];
+        List<Doc> live = new ArrayList<>(liveCount);
+        for (int id = 0; id < docs.size(); id++) {
+            Doc doc = docs.get(id);
+            if (doc == null) continue;
+            remap[id] = live.size();
+            ids.put(doc.media(), live.size());
+            live.add(doc);
+        }
+        docs = live;
+        for (IntList list : postings.values()) {
+            for (int i = 0; i < list.size; i++) {
+                list.values[i] = remap[list.values[i]];
+            }
+        }
+    }
+
+    // عدد الخانات مع الفاضية؛ للاختبارات
+    int slots() {
+        return docs.size();
+    }
+
+    void clear() {
+        docs.clear();
+        ids.clear();
+        postings.clear();
+        liveCount = 0;
+    }
+
+    int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns matching media in catalog order (or best match first when {@code ranked}),
+     * skipping {@code offset} hits and returning at most {@code limit} of them.
+     */
+    List<Media> search(String keyword, Predicate<Media> filter, boolean ranked, int offset, int limit) {
+        List<Media> result = new ArrayList<>();
+        if (keyword == null || keyword.isBlank() || limit <= 0) return result;
+
+        String k = keyword.toLowerCase();
+        int skip = Math.max(0, offset);
+
+        if (!ranked) {
+            for (int id : candidates(k)) {
+                Doc doc = docs.get(id);
+                if (doc == null || !doc.text().contains(k) || !filter.test(doc.media())) continue;
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                result.add(doc.media());
+                if (result.size() == limit) break;
+            }
+            return result;
+        }
+
+        List<int[]> hits = new ArrayList<>();
+        for (int id : candidates(k)) {
+            Doc doc = docs.get(id);
+            if (doc == null || !filter.test(doc.media())) continue;
+            int at = doc.text().indexOf(k);
+            if (at < 0) continue;
+            hits.add(new int[]{score(doc, at), id});
+        }
+        hits.sort(Comparator.<int[]>comparingInt(h -> h[0]).thenComparingInt(h -> h[1]));
+
+        for (int i = skip; i < hits.size() && result.size() < limit; i++) {
+            result.add(docs.get(hits.get(i)[1]).media());
+        }
+        return result;
+    }
+
+    // 0 = title prefix, 1 = inside title, 2 = author, 3 = ISBN
+    private static int score(Doc doc, int at) {
+        if (at == 0) return 0;
+        if (at < doc.titleEnd()) return 1;
+        if (at < doc.authorEnd()) return 2;
+        return 3;
+    }
+
+    private int[] candidates(String k) {
+        if (k.length() == GRAM - 1) {
+            IntList list = postings.get(bigram(k, 0));
+            return list == null ? new int[0] : Arrays.copyOf(list.values, list.size);
+        }
+        if (k.length() < GRAM) {
+            int[] all = new int[liveCount];
+            int n = 0;
+            for (int id = 0; id < docs.size(); id++) {
+                if (docs.get(id) != null) all[n++] = id;
+            }
+            return all;
+        }
+
+        List<IntList> lists = new ArrayList<>();
+        for (long gram : trigrams(k)) {
+            IntList list = postings.get(gram);
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(l -> l.size));
+
+        int[] current = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+        for (int i = 1; i < lists.size() && current.length > 0; i++) {
+            current = intersect(current, lists.get(i));
+        }
+        return current;
+    }
+
+    private static int[] intersect(int[] a, IntList b) {
+        int[] out = new int[Math.min(a.length, b.size)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.size) {
+            if (a[i] == b.values[j]) {
+                out[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b.values[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // كل الـtrigrams والـbigrams تبعت النص، بدون تكرار
+    private static long[] grams(String s) {
+        long[] tri = trigrams(s);
+        int pairs = Math.max(0, s.length() - 1);
+        long[] out = Arrays.copyOf(tri, tri.length + pairs);
+        for (int i = 0; i < pairs; i++) {
+            out[tri.length + i] = bigram(s, i);
+        }
+        return distinct(out);
+    }
+
+    private static long[] trigrams(String s) {
+        if (s.length() < GRAM) return new long[0];
+        long[] out = new long[s.length() - GRAM + 1];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return distinct(out);
+    }
+
+    private static long bigram(String s, int at) {
+        return BIGRAM | ((long) s.charAt(at) << 16) | s.charAt(at + 1);
+    }
+
+    private static long[] distinct(long[] out) {
+        Arrays.sort(out);
+        int n = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (n == 0 || out[n - 1] != out[i]) out[n++] = out[i];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase();
+    }
+
+    // ids are handed out in increasing order, so every posting list stays sorted
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void append(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at < 0) return;
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+        }
+    }
+}
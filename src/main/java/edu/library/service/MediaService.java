@@ -9,12 +9,26 @@ import edu.library.domain.time.TimeProvider;
 import edu.library.domain.time.SystemTimeProvider;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class MediaService {
 
+    private static final int DISPLAY_CHUNK = 1 << 14;
+
     private final String filePath;
     private final BorrowRecordService borrowRecordService;
     private final FineService fineService;
@@ -22,6 +36,38 @@ public class MediaService {
     private final FineCalculator fineCalculator;
 
     private List<Media> items = new ArrayList<>();
+    // copy-on-write snapshot للقرّاء؛ بيتصفّر تحت الـwrite lock مع كل إضافة أو حذف
+    private volatile List<Media> mediaSnapshot;
+
+    // فهرس الـISBN (بدون حساسية للأحرف) عشان البحث يكون O(1) بدل ما نلف على كل العناصر
+    private final Map<String, Media> isbnIndex = new ConcurrentHashMap<>();
+    private final Map<String, Book> bookIndex = new ConcurrentHashMap<>();
+    private final Map<String, CD> cdIndex = new ConcurrentHashMap<>();
+    private final MediaSearchIndex searchIndex = new MediaSearchIndex();
+    private final MediaSortedIndex titleIndex = new MediaSortedIndex(Media::getTitle);
+    private final MediaSortedIndex authorIndex = new MediaSortedIndex(Media::getAuthor);
+    // كل عنصر بالكتالوج → في نسخة متاحة؟ والمتاحين لحالهم عشان الفلتر ما يلف على الكل
+    private final Map<Media, Boolean> availability = new ConcurrentHashMap<>();
+    private final Set<Media> availableNow = ConcurrentHashMap.newKeySet();
+    // نفس المتاحين بترتيب العنوان، عشان صفحات الرف ما ترتّب كل مرة؛ الكتابة عليه تحت قفله هو
+    private final MediaSortedIndex availableByTitle = new MediaSortedIndex(Media::getTitle);
+    private final Consumer<Media> availabilityListener = this::availabilityChanged;
+    // الإضافة والحذف بياخذوا write lock، البحث والـsnapshot read lock؛ الاستعارة ما بتاخذ أي قفل
+    private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+
+    // null = الكتابة على الملف بتصير بنفس الـthread (السلوك القديم)
+    private volatile ExecutorService writer;
+    // الـthread اللي شغّال للـwriter هسا؛ awaitWrite جواه بينفّذ مباشرة بدل ما يستنى حاله
+    private volatile Thread writerThread;
+    private final AtomicBoolean rewritePending = new AtomicBoolean();
+
+    // null = كل تعديل بيكتب media.txt كامل (السلوك القديم)
+    private volatile MediaJournal journal;
+    private boolean replayedJournal;
+    private OverdueLedger overdueLedger;
+    private MediaLoadStats lastLoadStats;
+    // null = كل عنصر object لحاله (السلوك القديم)؛ بيتبدّل بواحد جديد مع كل load أو restore
+    private volatile ColumnarCatalog columnar;
 
 
     public MediaService() {
@@ -37,6 +83,16 @@ public class MediaService {
                         FineService fineService,
                         TimeProvider timeProvider,
                         FineCalculator fineCalculator) {
+        this(filePath, borrowRecordService, fineService, timeProvider, fineCalculator, true);
+    }
+
+    // load=false: الخدمات بتنربط هون بدون قراءة ملفات، وLibraryBootstrap بيعمل load() على thread لحاله
+    MediaService(String filePath,
+                 BorrowRecordService borrowRecordService,
+                 FineService fineService,
+                 TimeProvider timeProvider,
+                 FineCalculator fineCalculator,
+                 boolean load) {
 
         this.filePath = filePath;
         this.borrowRecordService = borrowRecordService;
@@ -44,7 +100,7 @@ public class MediaService {
         this.timeProvider = timeProvider;
         this.fineCalculator = fineCalculator;
 
-        loadMediaFromFile(filePath);
+        if (load) load();
     }
 
     public MediaService(String filePath,
@@ -52,107 +108,392 @@ public class MediaService {
                         FineService fineService) {
         this(filePath, borrowRecordService, fineService, new SystemTimeProvider(), new FineCalculator());
     }
+    void load() {
+        loadMediaFromFile(filePath);
+        replayJournal();
+    }
+
     private void loadMediaFromFile(String filename) {
         File file = new File(filename);
         if (!file.exists()) return;
 
-        items.clear();
+        resetCatalog();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
+        try {
+            lastLoadStats = MediaFileParser.parse(file.toPath(), this::addToIndexes);
+            if (lastLoadStats.malformed() > 0) {
+                System.out.println("Skipped " + lastLoadStats.malformed() + " malformed media line(s) in " + filename);
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading media: " + e.getMessage());
+        }
+    }
 
-                line = line.trim();
-                // تجاهل الأسطر الفاضية
-                if (line.isEmpty()) {
-                    continue;
-                }
+    void restore(List<Media> saved) {
+        catalogLock.writeLock().lock();
+        try {
+            resetCatalog();
+            for (Media m : saved) {
+                addToIndexes(m);
+            }
+            // الـsnapshot فيه أثر الـjournal أصلاً؛ أول rewrite لازم يحذف الـsegments عشان ما ينعاد تطبيقها
+            replayedJournal = !MediaJournal.segmentFiles(filePath).isEmpty();
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
 
-                String[] parts = line.split(";", -1);
-                if (parts.length != 7) {
-                    // سطر مش على الشكل الصحيح → تجاهله
-                    continue;
-                }
+    // null لو الملف ما كان موجود
+    public MediaLoadStats getLastLoadStats() {
+        return lastLoadStats;
+    }
 
-                String type   = parts[0];
-                String title  = parts[1];
-                String author = parts[2];
-                String isbn   = parts[3];
+    static Media parseMediaLine(String line) {
+        line = line.trim();
+        // تجاهل الأسطر الفاضية
+        if (line.isEmpty()) {
+            return null;
+        }
 
-                int total;
-                int available;
-                try {
-                    total     = Integer.parseInt(parts[4].trim());
-                    available = Integer.parseInt(parts[5].trim());
-                } catch (NumberFormatException e) {
-                    // لو الأرقام خربانة ما نطيّر البرنامج كله
-                    continue;
-                }
+        String[] parts = line.split(";", -1);
+        if (parts.length != 7) {
+            // سطر مش على الشكل الصحيح → تجاهله
+            return null;
+        }
 
-                LocalDate dueDate = null;
-                String dueRaw = parts[6].trim();
-                if (!dueRaw.equalsIgnoreCase("null") && !dueRaw.isBlank()) {
-                    dueDate = LocalDate.parse(dueRaw);
-                }
+        String type   = parts[0];
+        String title  = parts[1];
+        String author = parts[2];
+        String isbn   = parts[3];
+
+        int total;
+        int available;
+        try {
+            total     = Integer.parseInt(parts[4].trim());
+            available = Integer.parseInt(parts[5].trim());
+        } catch (NumberFormatException e) {
+            // لو الأرقام خربانة ما نطيّر البرنامج كله
+            return null;
+        }
 
-                Media m = null;
-
-                if (type.equalsIgnoreCase("BOOK")) {
-                    // نستخدم الكونستركتور اللي ياخذ total فقط
-                    Book b = new Book(title, author, isbn, total);
-                    b.setAvailableCopies(available);
-                    b.setDueDate(dueDate);
-                    m = b;
-                } else if (type.equalsIgnoreCase("CD")) {
-                    CD cd = new CD(title, author, isbn, total);
-                    cd.setAvailableCopies(available);
-                    cd.setDueDate(dueDate);
-                    m = cd;
-                }
+        LocalDate dueDate = parseDue(parts[6]);
+
+        Media m = null;
+
+        if (type.equalsIgnoreCase("BOOK")) {
+            // نستخدم الكونستركتور اللي ياخذ total فقط
+            Book b = new Book(title, author, isbn, total);
+            b.setAvailableCopies(available);
+            b.setDueDate(dueDate);
+            m = b;
+        } else if (type.equalsIgnoreCase("CD")) {
+            CD cd = new CD(title, author, isbn, total);
+            cd.setAvailableCopies(available);
+            cd.setDueDate(dueDate);
+            m = cd;
+        }
+        return m;
+    }
 
-                if (m != null) {
-                    items.add(m);
-                }
-            }
+    private static LocalDate parseDue(String raw) {
+        String dueRaw = raw.trim();
+        if (dueRaw.equalsIgnoreCase("null") || dueRaw.isBlank()) return null;
+        return LocalDate.parse(dueRaw);
+    }
 
-        } catch (IOException e) {
-            System.out.println("Error loading media: " + e.getMessage());
-        }
+    static String formatMediaLine(Media m) {
+        return String.format("%s;%s;%s;%s;%d;%d;%s",
+                (m instanceof Book) ? "BOOK" : "CD",
+                m.getTitle(),
+                m.getAuthor(),
+                m.getIsbn(),
+                m.getTotalCopies(),
+                m.getAvailableCopies(),
+                (m.getDueDate() != null ? m.getDueDate() : "null")
+        );
     }
 
 
 
     public void saveAllMediaToFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            for (Media m : items) {
-                writer.write(String.format("%s;%s;%s;%s;%d;%d;%s%n",
-                        (m instanceof Book) ? "BOOK" : "CD",
-                        m.getTitle(),
-                        m.getAuthor(),
-                        m.getIsbn(),
-                        m.getTotalCopies(),
-                        m.getAvailableCopies(),
-                        (m.getDueDate() != null ? m.getDueDate() : "null")
-                ));
+        if (journal != null) {
+            compactJournal();
+            return;
+        }
+        awaitWrite(this::rewriteFile);
+    }
+
+    private void rewriteFile() {
+        List<String> lines = snapshotLines();
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(filePath))) {
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
             }
         } catch (IOException e) {
             System.out.println("Error saving media: " + e.getMessage());
+            return;
         }
+
+        // الملف صار فيه كل شي، فأي journal قديم لازم ينحذف عشان ما ينعاد تطبيقه
+        if (replayedJournal) {
+            MediaJournal.deleteSegments(filePath, Integer.MAX_VALUE);
+            replayedJournal = false;
+        }
+    }
+
+    // -----------------------------
+    //          JOURNAL MODE
+    // -----------------------------
+    public void enableJournal(int compactEvery) {
+        if (journal != null) return;
+        journal = new MediaJournal(filePath, compactEvery);
+    }
+
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    public void compactJournal() {
+        awaitWrite(() -> {
+            if (journal == null) return;
+            try {
+                journal.compact(snapshotLines()).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.out.println("Error compacting media journal: " + e.getMessage());
+            }
+        });
+    }
+
+    public void closeJournal() {
+        if (journal == null) return;
+        compactJournal();
+        awaitWrite(() -> {
+            journal.close();
+            journal = null;
+        });
     }
 
+    // -----------------------------
+    //        CONCURRENT MODE
+    // -----------------------------
+
+    /**
+     * Lets several checkout threads share this service. Copy counters are already
+     * compare-and-set; this mode moves every file write onto one writer thread, so callers
+     * never block on disk and writes never interleave.
+     */
+    public synchronized void enableConcurrentMode() {
+        if (writer != null) return;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "media-writer");
+            t.setDaemon(true);
+            writerThread = t;
+            return t;
+        });
+    }
+
+    public boolean isConcurrentMode() {
+        return writer != null;
+    }
+
+    // بيستنى لحد ما كل الكتابات اللي بالطابور تخلص
+    public void flushPendingWrites() {
+        awaitWrite(() -> { });
+    }
 
+    public synchronized void disableConcurrentMode() {
+        if (writer == null) return;
+        flushPendingWrites();
+        writer.shutdown();
+        writer = null;
+        writerThread = null;
+    }
+
+    private void persist(String op, Media m) {
+        persist(op, List.of(m));
+    }
+
+    // الدفعة كلها بتنكتب مرة وحدة: rewrite واحد أو append واحد على الـjournal
+    // writer بينقرا مرة وحدة: disableConcurrentMode ممكن يصفّره بالنص، ولو رفض الـtask بنكتب هون
+    private void persist(String op, List<Media> changed) {
+        ExecutorService current = writer;
+        if (current == null) {
+            write(op, changed);
+            return;
+        }
+        if (journal == null) {
+            // كل rewrite بياخذ الحالة الحالية، فما في داعي نحط أكثر من واحد بالطابور
+            if (rewritePending.compareAndSet(false, true)) {
+                try {
+                    current.submit(() -> {
+                        rewritePending.set(false);
+                        rewriteFile();
+                    });
+                } catch (RejectedExecutionException e) {
+                    rewritePending.set(false);
+                    awaitWrite(this::rewriteFile);
+                }
+            }
+            return;
+        }
+        try {
+            current.submit(() -> write(op, changed));
+        } catch (RejectedExecutionException e) {
+            write(op, changed);
+        }
+    }
+
+    // القيم بتنقرا وقت الكتابة مش وقت التعديل، فآخر entry دايماً فيه آخر حالة للعنوان
+    private void write(String op, List<Media> changed) {
+        if (journal == null) {
+            saveAllMediaToFile();
+            return;
+        }
+
+        List<String> entries = new ArrayList<>(changed.size());
+        for (Media m : changed) {
+            entries.add(journalEntry(op, m));
+        }
+        journal.appendAll(entries);
+        if (journal.shouldCompact()) {
+            journal.compact(snapshotLines());
+        }
+    }
+
+    private static String journalEntry(String op, Media m) {
+        return switch (op) {
+            case MediaJournal.ADD -> op + ";" + formatMediaLine(m);
+            case MediaJournal.DELETE -> op + ";" + m.getIsbn();
+            case MediaJournal.QUANTITY -> op + ";" + m.getIsbn() + ";" + m.getTotalCopies() + ";" + m.getAvailableCopies();
+            default -> op + ";" + m.getIsbn() + ";" + m.getAvailableCopies() + ";"
+                    + (m.getDueDate() == null ? "null" : m.getDueDate());
+        };
+    }
+
+    private List<String> snapshotLines() {
+        catalogLock.readLock().lock();
+        try {
+            List<String> lines = new ArrayList<>(items.size());
+            for (Media m : items) lines.add(formatMediaLine(m));
+            return lines;
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    private void awaitWrite(Runnable task) {
+        ExecutorService current = writer;
+        if (current == null || Thread.currentThread() == writerThread) {
+            task.run();
+            return;
+        }
+        try {
+            current.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            // الـwriter انسكّر بين ما قرأناه وهسا
+            task.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("Error writing media: " + e.getMessage());
+        }
+    }
+
+    private void replayJournal() {
+        List<String> entries = MediaJournal.readPending(filePath);
+        if (entries.isEmpty()) return;
+        replayedJournal = true;
+
+        for (String entry : entries) {
+            int cut = entry.indexOf(';');
+            if (cut < 0) continue;
+            String op = entry.substring(0, cut);
+            String rest = entry.substring(cut + 1);
+            String[] p = rest.split(";", -1);
+
+            try {
+                switch (op) {
+                    case MediaJournal.ADD -> {
+                        // زي addMedia بالزبط: ISBN مكرر بيضل عنصر ثاني. segments الـcompaction
+                        // اللي انقطعت ما بتوصل هون (readPending بيتخطاها)
+                        Media added = parseMediaLine(rest);
+                        if (added != null) addToIndexes(added);
+                    }
+                    case MediaJournal.DELETE -> {
+                        Media m = findByIsbn(p[0]);
+                        if (m != null) removeFromIndexes(m);
+                    }
+                    case MediaJournal.BORROW, MediaJournal.RETURN -> {
+                        Media m = findByIsbn(p[0]);
+                        if (m == null) continue;
+                        m.setAvailableCopies(Integer.parseInt(p[1]));
+                        m.setDueDate(parseDue(p[2]));
+                    }
+                    case MediaJournal.QUANTITY -> {
+                        Media m = findByIsbn(p[0]);
+                        if (m == null) continue;
+                        m.setTotalCopies(Integer.parseInt(p[1]));
+                        m.setAvailableCopies(Integer.parseInt(p[2]));
+                    }
+                    default -> {
+                        // عملية مش معروفة → تجاهلها
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Skipping bad media journal entry: " + entry);
+            }
+        }
+    }
+
+    // بالـcolumnar mode الكتالوج بيخزّن نسخته هو من media؛ findByIsbn بيرجّعها
     public void addMedia(Media media) {
-        items.add(media);
-        saveAllMediaToFile();
-        System.out.println("Added: " + media.getTitle());
+        Media stored = addToIndexes(media);
+        persist(MediaJournal.ADD, stored);
+        System.out.println("Added: " + stored.getTitle());
+    }
+
+    /**
+     * Imports a supplier feed (see {@link MediaImporter} for the file layout). Rows whose ISBN is
+     * already in the catalog, or earlier in the feed, add their copies to that title. The media
+     * file is written once at the end, so importing n rows costs one rewrite instead of n.
+     */
+    public MediaImportReport importMedia(Path feed, MediaImportListener listener) {
+        MediaImporter importer = new MediaImporter(this, listener);
+        try {
+            importer.run(feed);
+        } catch (IOException e) {
+            // الصفوف اللي دخلت قبل الخطأ بتنحفظ عشان الملف يطابق الذاكرة
+            System.out.println("Error importing media: " + e.getMessage());
+        }
+        return finishImport(importer);
+    }
+
+    public MediaImportReport importMedia(Iterator<? extends Media> feed, MediaImportListener listener) {
+        MediaImporter importer = new MediaImporter(this, listener);
+        importer.run(feed);
+        return finishImport(importer);
+    }
+
+    private MediaImportReport finishImport(MediaImporter importer) {
+        MediaImportReport report = importer.finish();
+        if (report.accepted() > 0) saveAllMediaToFile();
+        return report;
+    }
+
+    // بدون كتابة على الملف؛ الـimport بيكتب مرة وحدة بالآخر
+    void addImported(Media media) {
+        addToIndexes(media);
     }
 
     public boolean deleteMedia(String isbn) {
         Media m = findByIsbn(isbn);
         if (m == null) return false;
 
-        items.remove(m);
-        saveAllMediaToFile();
+        removeFromIndexes(m);
+        persist(MediaJournal.DELETE, m);
         return true;
     }
 
@@ -163,23 +504,27 @@ public class MediaService {
         m.setTotalCopies(newQty);
         if (m.getAvailableCopies() > newQty) m.setAvailableCopies(newQty);
 
-        saveAllMediaToFile();
+        persist(MediaJournal.QUANTITY, m);
         return true;
     }
 
     public List<Media> searchMedia(String keyword) {
-        List<Media> result = new ArrayList<>();
-        if (keyword == null || keyword.isBlank()) return result;
+        return search(keyword, m -> true, false, 0, Integer.MAX_VALUE);
+    }
 
-        String k = keyword.toLowerCase();
-        for (Media m : items) {
-            if (m.getTitle().toLowerCase().contains(k) ||
-                    m.getAuthor().toLowerCase().contains(k) ||
-                    m.getIsbn().toLowerCase().contains(k)) {
-                result.add(m);
-            }
+    // نسخة بصفحات: ranked=true بيرجع مطابقات العنوان أول، بعدين المؤلف، بعدين الـISBN
+    public List<Media> searchMedia(String keyword, boolean ranked, int offset, int limit) {
+        return search(keyword, m -> true, ranked, offset, limit);
+    }
+
+    private List<Media> search(String keyword, Predicate<Media> filter,
+                               boolean ranked, int offset, int limit) {
+        catalogLock.readLock().lock();
+        try {
+            return searchIndex.search(keyword, filter, ranked, offset, limit);
+        } finally {
+            catalogLock.readLock().unlock();
         }
-        return result;
     }
 
 
@@ -205,47 +550,46 @@ public class MediaService {
 
         // Prevent borrowing when the user already has an overdue active record.
         LocalDate today = timeProvider.today();
-        for (BorrowRecord record : borrowRecordService.getActiveBorrowRecordsForUser(username)) {
-            if (record.getDueDate() != null && today != null && today.isAfter(record.getDueDate())) {
-                System.out.println("Cannot borrow with overdue items.");
-                return false;
-            }
+        if (today != null && borrowRecordService.anyActiveLoan(username,
+                record -> record.overdueDays(today.toEpochDay()) > 0)) {
+            System.out.println("Cannot borrow with overdue items.");
+            return false;
         }
 
 
         LocalDate dueDate = timeProvider.today().plusDays(m.getBorrowDurationDays());
 
 
-        m.borrowOne();
-
-
+        // الفحص فوق ممكن يكون قديم لو في desk ثاني استعار بنفس اللحظة
+        if (!m.tryBorrowOne()) {
+            System.out.println("Item not available.");
+            return false;
+        }
 
         m.setDueDate(dueDate);
 
         borrowRecordService.recordBorrow(username, m.getIsbn(), dueDate);
 
-        saveAllMediaToFile();
+        persist(MediaJournal.BORROW, m);
         return true;
     }
 
 
     public boolean returnMedia(Media m, String username) {
-        BorrowRecord active = borrowRecordService.findActiveBorrowRecord(username, m.getIsbn());
+        LocalDate returnDate = timeProvider.today();
+        // الفحص والإرجاع بخطوة وحدة، فلو desk ثاني سبقنا بنرجع false وما بنزيد النسخ مرتين
+        BorrowRecord active = borrowRecordService.returnActiveLoan(username, m.getIsbn(), returnDate);
         if (active == null) return false;
 
-        LocalDate originalDue = active.getDueDate();
-        LocalDate returnDate = timeProvider.today();
+        int overdueDays = active.overdueDays(returnDate.toEpochDay());
 
         m.returnOne();
         if (m.getAvailableCopies() == m.getTotalCopies()) m.setDueDate(null);
 
-        saveAllMediaToFile();
-        borrowRecordService.recordReturn(username, m.getIsbn(), returnDate);
+        persist(MediaJournal.RETURN, m);
 
-        if (returnDate.isAfter(originalDue)) {
-            int overdueDays = (int) ChronoUnit.DAYS.between(originalDue, returnDate);
-            int ratePerDay = (m instanceof Book) ? 10 : (m instanceof CD) ? 20 : 0;
-            int fineAmount = overdueDays * ratePerDay;
+        if (overdueDays > 0) {
+            int fineAmount = overdueDays * dailyRate(m);
             int currentBalance = fineService.getBalance(username);
 
             if (fineAmount > currentBalance) {
@@ -257,14 +601,117 @@ public class MediaService {
         return true;
     }
 
+    /**
+     * Borrows every ISBN in {@code isbns} (one copy per entry) or none of them. Fines and
+     * overdue loans are checked once for the whole stack, and the loan records and the media
+     * file are each written once.
+     */
+    public boolean borrowAll(String username, List<String> isbns) {
+        if (username == null || isbns == null || isbns.isEmpty()) return false;
+
+        List<Media> stack = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Media m = findByIsbn(isbn);
+            if (m == null) {
+                System.out.println("Item not found: " + isbn);
+                return false;
+            }
+            stack.add(m);
+        }
+
+        if (fineService.getBalance(username) > 0) {
+            System.out.println("Pay fines before borrowing.");
+            return false;
+        }
+
+        LocalDate today = timeProvider.today();
+        if (today != null && borrowRecordService.anyActiveLoan(username,
+                record -> record.overdueDays(today.toEpochDay()) > 0)) {
+            System.out.println("Cannot borrow with overdue items.");
+            return false;
+        }
+
+        // بنحجز النسخ وحدة وحدة؛ لو وحدة خلصت بنرجّع اللي أخذناه وما بيصير إشي
+        List<Media> reserved = new ArrayList<>(stack.size());
+        for (Media m : stack) {
+            if (!m.tryBorrowOne()) {
+                for (Media r : reserved) r.tryReturnOne();
+                System.out.println("Item not available: " + m.getIsbn());
+                return false;
+            }
+            reserved.add(m);
+        }
+
+        List<BorrowRecord> loans = new ArrayList<>(stack.size());
+        for (Media m : stack) {
+            LocalDate dueDate = today.plusDays(m.getBorrowDurationDays());
+            m.setDueDate(dueDate);
+            loans.add(new BorrowRecord(username, m.getIsbn(), dueDate, false, null));
+        }
+        borrowRecordService.recordBorrows(loans);
+        persist(MediaJournal.BORROW, stack);
+        return true;
+    }
+
+    /**
+     * Returns every ISBN in {@code isbns} or none of them: each entry has to match a separate
+     * active loan of {@code username}. The loans are picked and closed in one step by
+     * {@link BorrowRecordService#returnActiveLoans}, so copies and fees are only counted for
+     * loans this call closed. Late fees follow {@link #returnMedia} item by item but are charged
+     * with one update, and every file is written once.
+     */
+    public boolean returnAll(String username, List<String> isbns) {
+        if (username == null || isbns == null || isbns.isEmpty()) return false;
+
+        List<Media> stack = new ArrayList<>(isbns.size());
+        List<String> keys = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Media m = findByIsbn(isbn);
+            if (m == null) {
+                System.out.println("No active loan for " + isbn + ".");
+                return false;
+            }
+            stack.add(m);
+            keys.add(m.getIsbn());
+        }
+
+        LocalDate returnDate = timeProvider.today();
+        List<BorrowRecord> loans = borrowRecordService.returnActiveLoans(username, keys, returnDate);
+        if (loans == null) {
+            System.out.println("No active loan for " + String.join(", ", isbns) + ".");
+            return false;
+        }
+
+        int balance = fineService.getBalance(username);
+        // نفس نتيجة returnMedia على كل عنصر لحاله: الرصيد بيصير أكبر غرامة لو كانت أعلى منه
+        int owed = balance;
+        for (int i = 0; i < stack.size(); i++) {
+            Media m = stack.get(i);
+            int overdueDays = loans.get(i).overdueDays(returnDate.toEpochDay());
+            if (overdueDays > 0) {
+                owed = Math.max(owed, overdueDays * dailyRate(m));
+            }
+            m.returnOne();
+            if (m.getAvailableCopies() == m.getTotalCopies()) m.setDueDate(null);
+        }
+
+        persist(MediaJournal.RETURN, stack);
+        if (owed > balance) {
+            fineService.addFine(username, owed - balance);
+        }
+        return true;
+    }
+
+    private static int dailyRate(Media m) {
+        return (m instanceof Book) ? 10 : (m instanceof CD) ? 20 : 0;
+    }
+
     // -----------------------------
     //          HELPERS
     // -----------------------------
     public Media findByIsbn(String isbn) {
-        for (Media m : items) {
-            if (m.getIsbn().equalsIgnoreCase(isbn)) return m;
-        }
-        return null;
+        if (isbn == null) return null;
+        return isbnIndex.get(isbnKey(isbn));
     }
 
     public void payFine(String username, int amount) {
@@ -292,45 +739,63 @@ public class MediaService {
     //    Admin & Librarian
     // -----------------------------
     public List<Media> getAllMedia() {
-        return new ArrayList<>(items);
+        return new SnapshotList<>(snapshotMedia());
+    }
+
+    /**
+     * Read-only list of the catalog, shared by all readers until the next add or remove.
+     * {@link #getAllMedia()} wraps it for callers that modify the result.
+     */
+    public List<Media> snapshotMedia() {
+        List<Media> snapshot = mediaSnapshot;
+        if (snapshot != null) return snapshot;
+
+        catalogLock.readLock().lock();
+        try {
+            // تحت الـread lock ما في كاتب، فما حدا بيصفّره قبل ما نخزّنه
+            snapshot = mediaSnapshot;
+            if (snapshot == null) {
+                snapshot = List.copyOf(items);
+                mediaSnapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    public Stream<Media> streamMedia() {
+        return snapshotMedia().stream();
     }
 
     public Map<String, Integer> getAllFines() {
         return fineService.getAllBalances(); // ✅ استخدام FineService مباشرة
     }
 
+    // على الـsnapshot مش items، عشان إضافة أو حذف بنفس الوقت ما تكسر اللفة
     public List<Book> getBooks() {
         List<Book> books = new ArrayList<>();
-        for (Media m : items) if (m instanceof Book) books.add((Book) m);
+        for (Media m : snapshotMedia()) if (m instanceof Book) books.add((Book) m);
         return books;
     }
 
     public List<CD> getCDs() {
         List<CD> cds = new ArrayList<>();
-        for (Media m : items) if (m instanceof CD) cds.add((CD) m);
+        for (Media m : snapshotMedia()) if (m instanceof CD) cds.add((CD) m);
         return cds;
     }
 
     public List<Book> searchBook(String keyword) {
         List<Book> result = new ArrayList<>();
-        if (keyword == null || keyword.isBlank()) return result;
-
-        String k = keyword.toLowerCase();
-        for (Media m : items) {
-            if (m instanceof Book b) {
-                if (b.getTitle().toLowerCase().contains(k) ||
-                        b.getAuthor().toLowerCase().contains(k) ||
-                        b.getIsbn().toLowerCase().contains(k)) result.add(b);
-            }
+        for (Media m : search(keyword, m -> m instanceof Book, false, 0, Integer.MAX_VALUE)) {
+            result.add((Book) m);
         }
         return result;
     }
 
     public Book findBookByIsbn(String isbn) {
-        for (Media m : items) {
-            if (m instanceof Book b && b.getIsbn().equalsIgnoreCase(isbn)) return b;
-        }
-        return null;
+        if (isbn == null) return null;
+        return bookIndex.get(isbnKey(isbn));
     }
 
     public boolean borrowBook(Book book, String username) {
@@ -342,35 +807,20 @@ public class MediaService {
     }
 
     public List<BorrowRecord> getActiveBorrowRecordsForUser(String username) {
-        List<BorrowRecord> active = new ArrayList<>();
-        for (BorrowRecord r : borrowRecordService.getRecords()) {
-            if (r.getUsername().equalsIgnoreCase(username) && !r.isReturned()) active.add(r);
-        }
-        return active;
+        return borrowRecordService.getActiveBorrowRecordsForUserIgnoreCase(username);
     }
 
     public List<CD> searchCD(String keyword) {
         List<CD> result = new ArrayList<>();
-        if (keyword == null || keyword.isBlank()) return result;
-
-        String k = keyword.toLowerCase();
-        for (Media m : items) {
-            if (m instanceof CD cd) {
-                if (cd.getTitle().toLowerCase().contains(k) ||
-                        cd.getAuthor().toLowerCase().contains(k) ||
-                        cd.getIsbn().toLowerCase().contains(k)) {
-                    result.add(cd);
-                }
-            }
+        for (Media m : search(keyword, m -> m instanceof CD, false, 0, Integer.MAX_VALUE)) {
+            result.add((CD) m);
         }
         return result;
     }
 
     public CD findCDByIsbn(String isbn) {
-        for (Media m : items) {
-            if (m instanceof CD cd && cd.getIsbn().equalsIgnoreCase(isbn)) return cd;
-        }
-        return null;
+        if (isbn == null) return null;
+        return cdIndex.get(isbnKey(isbn));
     }
 
     public boolean borrowCD(CD cd, String username) {
@@ -382,72 +832,121 @@ public class MediaService {
     }
 
     public void displayMedia() {
-        if (items.isEmpty()) {
+        List<Media> all = snapshotMedia();
+        if (all.isEmpty()) {
             System.out.println("No media available.");
             return;
         }
-        for (Media m : items) {
-            System.out.printf("%s | %s | ISBN: %s | Available: %d/%d | Due: %s%n",
-                    (m instanceof Book) ? "[Book]" : "[CD]",
-                    m.getTitle(),
-                    m.getIsbn(),
-                    m.getAvailableCopies(),
-                    m.getTotalCopies(),
-                    (m.getDueDate() != null ? m.getDueDate() : "None")
-            );
+        // بنطبع على دفعات بدل printf لكل عنصر
+        StringBuilder out = new StringBuilder(DISPLAY_CHUNK + 256);
+        for (Media m : all) {
+            MediaPage.appendListing(out, m);
+            out.append(System.lineSeparator());
+            if (out.length() >= DISPLAY_CHUNK) {
+                System.out.print(out);
+                out.setLength(0);
+            }
         }
+        System.out.print(out);
+        System.out.flush();
     }
-    public void updateFinesOnStartup() {
 
-        LocalDate today = timeProvider.today();
+    /**
+     * One page of the catalog, sorted by {@code sort} and limited to {@code type} (null for
+     * all). Pass null as cursor for the first page and {@link MediaPage#getNextCursor()} after.
+     */
+    public MediaPage listMedia(Class<? extends Media> type, MediaPage.Sort sort, String cursor, int pageSize) {
+        MediaPage.Sort by = sort == null ? MediaPage.Sort.TITLE : sort;
+        MediaSortedIndex index = by == MediaPage.Sort.TITLE ? titleIndex
+                : by == MediaPage.Sort.AUTHOR ? authorIndex : null;
+        if (index == null) return MediaPage.of(snapshotMedia(), type, by, cursor, pageSize);
+
+        String[] after = MediaPage.decode(cursor, by);
+        return MediaPage.ofSorted(after == null ? index.all() : index.after(after[0], after[1]),
+                type, by, pageSize);
+    }
 
-        Map<String, Integer> recalculatedFines = new HashMap<>();
+    // -----------------------------
+    //      SORTED TITLE / AUTHOR
+    // -----------------------------
+    // كلهم بيمشوا بترتيب (القيمة، الـISBN) بدون فرق بالحروف، فالـoffset بيعطي نفس الصفحات كل مرة
 
-        for (BorrowRecord record : borrowRecordService.getRecords()) {
+    public List<Media> findByTitlePrefix(String prefix, int offset, int limit) {
+        return slice(titleIndex.prefix(prefix), offset, limit);
+    }
 
-            if (record.isReturned()
-                    || record.getDueDate() == null
-                    || !today.isAfter(record.getDueDate())) {
-                continue;
-            }
+    /** Titles from {@code from} (inclusive) to {@code to} (exclusive); null leaves a side open. */
+    public List<Media> findByTitleRange(String from, String to, int offset, int limit) {
+        return slice(titleIndex.range(from, to), offset, limit);
+    }
 
-            Media media = findByIsbn(record.getIsbn());
-            if (media == null) {
-                continue;
-            }
+    public List<Media> findByAuthor(String author, int offset, int limit) {
+        return slice(authorIndex.exact(author), offset, limit);
+    }
 
-            int overdueDays = (int) ChronoUnit.DAYS.between(
-                    record.getDueDate(),
-                    today
-            );
-
-            int ratePerDay;
-            if (media instanceof Book) {
-                ratePerDay = 10;   // book rate (10/day)
-            } else if (media instanceof CD) {
-                ratePerDay = 20;   // CD rate (20/day)
-            } else {
-                continue;
-            }
+    public List<Media> findByAuthorPrefix(String prefix, int offset, int limit) {
+        return slice(authorIndex.prefix(prefix), offset, limit);
+    }
 
-            int newFineAmount = overdueDays * ratePerDay;
+    private static List<Media> slice(Iterable<Media> sorted, int offset, int limit) {
+        List<Media> result = new ArrayList<>();
+        if (limit <= 0) return result;
+        int skipped = 0;
+        for (Media m : sorted) {
+            if (skipped++ < offset) continue;
+            result.add(m);
+            if (result.size() == limit) break;
+        }
+        return result;
+    }
 
-            String username = record.getUsername();
-            recalculatedFines.merge(username, newFineAmount, Integer::sum);
+    /**
+     * Writes the catalog as a CSV feed that {@link #importMedia(Path, MediaImportListener)} reads
+     * back, through one buffered writer. Returns the number of items written, or -1 on error.
+     */
+    public int exportMedia(Path target, Class<? extends Media> type, MediaPage.Sort sort) {
+        List<Media> rows = snapshotMedia();
+        if (sort != null) {
+            rows = new ArrayList<>(rows);
+            rows.sort(MediaPage.order(sort));
         }
 
-        for (Map.Entry<String, Integer> entry : recalculatedFines.entrySet()) {
-            String username = entry.getKey();
-            int recalculatedTotal = entry.getValue();
-            int currentBalance = fineService.getBalance(username);
+        int written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            out.write("type,title,author,isbn,copies");
+            out.newLine();
+            for (Media m : rows) {
+                if (type != null && !type.isInstance(m)) continue;
+                out.write(MediaImporter.formatRow(m));
+                out.newLine();
+                written++;
+            }
+        } catch (IOException e) {
+            System.out.println("Error exporting media: " + e.getMessage());
+            return -1;
+        }
+        return written;
+    }
+    public void updateFinesOnStartup() {
+        for (OverdueLedger.UserOverdue entry : getOverdueLedger().getAll().values()) {
+            int recalculatedTotal = entry.totalFine();
+            int currentBalance = fineService.getBalance(entry.username());
 
             if (recalculatedTotal > currentBalance) {
                 int diff = recalculatedTotal - currentBalance;
-                fineService.addFine(username, diff);
+                fineService.addFine(entry.username(), diff);
             }
         }
     }
 
+    // نفس الـledger لازم ينعطى لـReminderService عشان ما نلف على السجلات مرتين
+    public synchronized OverdueLedger getOverdueLedger() {
+        if (overdueLedger == null) {
+            overdueLedger = new OverdueLedger(borrowRecordService, timeProvider, this::findByIsbn);
+        }
+        return overdueLedger;
+    }
+
 
     public String getFilePath() {
         return filePath;
@@ -470,9 +969,8 @@ public class MediaService {
     }
 
     public boolean isMediaActive(String isbn) {
-        Media m = findByIsbn(isbn); // تبحث عن الكتاب/الـCD بالـISBN
-        if (m == null) return false; // إذا مش موجود → false
-        return true;                 // إذا موجود → true
+        if (isbn == null) return false;
+        return isbnIndex.containsKey(isbnKey(isbn)); // موجود بالفهرس → true
     }
 
     public void resetDueDateIfAllAvailable(Media m) {
@@ -487,9 +985,200 @@ public class MediaService {
 
         Book newBook = new Book(title, author, isbn, totalCopies);
         newBook.setAvailableCopies(totalCopies); // كل النسخ متاحة أولاً
-        items.add(newBook);
+        Media stored = addToIndexes(newBook);
+
+        persist(MediaJournal.ADD, stored); // تحفظ التغييرات في الملف
+    }
+
+    // -----------------------------
+    //          ISBN INDEX
+    // -----------------------------
+    private Media addToIndexes(Media media) {
+        catalogLock.writeLock().lock();
+        try {
+            ColumnarCatalog store = columnar;
+            Media m = store == null ? media : store.add(media);
+            items.add(m);
+            mediaSnapshot = null;
+            indexMedia(m);
+            searchIndex.add(m);
+            titleIndex.add(m);
+            authorIndex.add(m);
+            trackAvailability(m);
+            return m;
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    private void removeFromIndexes(Media m) {
+        catalogLock.writeLock().lock();
+        try {
+            items.remove(m);
+            mediaSnapshot = null;
+            reindexIsbn(m.getIsbn());
+            searchIndex.remove(m);
+            titleIndex.remove(m);
+            authorIndex.remove(m);
+            untrackAvailability(m);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    private static String isbnKey(String isbn) {
+        return isbn.toLowerCase(Locale.ROOT);
+    }
+
+    // أول عنصر بنفس الـISBN هو اللي بينرجع، زي ما كان البحث الخطي يعمل
+    private void indexMedia(Media m) {
+        if (m == null || m.getIsbn() == null) return;
+        String key = isbnKey(m.getIsbn());
+        isbnIndex.putIfAbsent(key, m);
+        if (m instanceof Book b) bookIndex.putIfAbsent(key, b);
+        else if (m instanceof CD cd) cdIndex.putIfAbsent(key, cd);
+    }
+
+    // بعد الحذف ممكن يكون في عنصر ثاني بنفس الـISBN، فنعيد بناء هاد المفتاح بس
+    private void reindexIsbn(String isbn) {
+        if (isbn == null) return;
+        String key = isbnKey(isbn);
+        isbnIndex.remove(key);
+        bookIndex.remove(key);
+        cdIndex.remove(key);
+        for (Media m : items) {
+            if (m.getIsbn() != null && isbnKey(m.getIsbn()).equals(key)) indexMedia(m);
+        }
+    }
+
+    // -----------------------------
+    //       AVAILABILITY INDEX
+    // -----------------------------
+    private void trackAvailability(Media m) {
+        if (m == null) return;
+        availability.put(m, Boolean.FALSE);
+        m.setAvailabilityListener(availabilityListener);
+        availabilityChanged(m);
+    }
+
+    private void untrackAvailability(Media m) {
+        availability.remove(m);
+        availableNow.remove(m);
+        shelved(m, false);
+        if (m.getAvailabilityListener() == availabilityListener) m.setAvailabilityListener(null);
+    }
+
+    // بيقرأ الحالة من جديد جوّا قفل المفتاح، فلو استعارة وإرجاع صاروا مع بعض آخر وحدة بتربح
+    // وعنصر انحذف (مش بالـmap) ما بيرجع
+    private void availabilityChanged(Media m) {
+        availability.computeIfPresent(m, (item, was) -> {
+            boolean now = item.isAvailable();
+            if (now) availableNow.add(item);
+            else availableNow.remove(item);
+            if (now != was) shelved(item, now);
+            return now;
+        });
+    }
 
-        saveAllMediaToFile(); // تحفظ التغييرات في الملف
+    // الاستعارات بتيجي من أكثر من thread بدون قفل الكتالوج، فالفهرس المرتّب بياخذ قفله
+    private void shelved(Media m, boolean onShelf) {
+        synchronized (availableByTitle) {
+            if (onShelf) availableByTitle.add(m);
+            else availableByTitle.remove(m);
+        }
+    }
+
+    public int getAvailableCount() {
+        return availableNow.size();
+    }
+
+    /**
+     * Items of {@code type} (null for all) that have a copy on the shelf right now and match
+     * {@code keyword}. With a keyword the trigram candidates are checked against the live
+     * availability set, in catalog order. Without one a title-ordered index of the available
+     * items, kept up to date by the availability listener, is walked to the requested page, so
+     * neither the rest of the catalog nor a sort is involved.
+     */
+    public List<Media> searchAvailable(String keyword, Class<? extends Media> type, int offset, int limit) {
+        Predicate<Media> ofType = type == null ? m -> true : type::isInstance;
+        if (keyword != null && !keyword.isBlank()) {
+            return search(keyword, m -> availableNow.contains(m) && ofType.test(m), false, offset, limit);
+        }
+
+        List<Media> result = new ArrayList<>();
+        if (limit <= 0) return result;
+        int skipped = 0;
+        for (Media m : availableByTitle.all()) {
+            if (!ofType.test(m) || skipped++ < offset) continue;
+            result.add(m);
+            if (result.size() == limit) break;
+        }
+        return result;
+    }
+
+    public List<Book> getAvailableBooks() {
+        List<Book> result = new ArrayList<>();
+        for (Media m : searchAvailable(null, Book.class, 0, Integer.MAX_VALUE)) result.add((Book) m);
+        return result;
+    }
+
+    public List<CD> getAvailableCDs() {
+        List<CD> result = new ArrayList<>();
+        for (Media m : searchAvailable(null, CD.class, 0, Integer.MAX_VALUE)) result.add((CD) m);
+        return result;
+    }
+
+    // -----------------------------
+    //        COLUMNAR CATALOG
+    // -----------------------------
+
+    /**
+     * Keeps the catalog in a {@link ColumnarCatalog}: every title becomes a row of primitive
+     * columns, and the Book/CD objects the service hands out read and write that row. Items
+     * already loaded are copied over, so Media references taken before this call no longer belong
+     * to the catalog; enable it before {@code load()} or right after construction. Media passed
+     * to {@link #addMedia} is copied too, so look the stored item up with {@link #findByIsbn}.
+     */
+    public void enableColumnarCatalog() {
+        catalogLock.writeLock().lock();
+        try {
+            if (columnar != null) return;
+            List<Media> current = new ArrayList<>(items);
+            for (Media m : current) {
+                if (m.getAvailabilityListener() == availabilityListener) m.setAvailabilityListener(null);
+            }
+            resetCatalog();
+            columnar = new ColumnarCatalog();
+            for (Media m : current) addToIndexes(m);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isColumnarCatalog() {
+        return columnar != null;
+    }
+
+    // الصفوف المحذوفة بتضل بالأعمدة لحد هون، فكل load/restore بيبدأ بأعمدة فاضية
+    private void resetCatalog() {
+        items.clear();
+        mediaSnapshot = null;
+        clearIndex();
+        searchIndex.clear();
+        if (columnar != null) columnar = new ColumnarCatalog();
+    }
+
+    private void clearIndex() {
+        availability.clear();
+        availableNow.clear();
+        synchronized (availableByTitle) {
+            availableByTitle.clear();
+        }
+        titleIndex.clear();
+        authorIndex.clear();
+        isbnIndex.clear();
+        bookIndex.clear();
+        cdIndex.clear();
     }
 
 
@@ -0,0 +1,102 @@
+package edu.library.service;
+
+import edu.library.domain.model.Media;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * One field (title or author) of every item, lower-cased and kept sorted in a skip list.
+ * Prefix, range and exact lookups seek in O(log n) and then walk only the matches, in the same
+ * order as {@link MediaPage} sorts them (field, then ISBN). Reads need no lock and see a weakly
+ * consistent view. Writes come from {@link MediaService} under its catalog write lock.
+ *
+ * <p>Keys are {@code field \0 isbn \0 serial}: the serial keeps two copies of the same row apart.
+ */
+class MediaSortedIndex {
+
+    private static final char SEP = '\u0000';
+
+    private final Function<Media, String> field;
+    private final ConcurrentSkipListMap<String, Media> sorted = new ConcurrentSkipListMap<>();
+    private final Map<Media, String> keys = new IdentityHashMap<>();
+    private long serial;
+
+    MediaSortedIndex(Function<Media, String> field) {
+        this.field = field;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    void add(Media m) {
+        if (m == null || keys.containsKey(m)) return;
+        String key = normalize(field.apply(m)) + SEP + normalize(m.getIsbn()) + SEP + Long.toString(serial++, 36);
+        keys.put(m, key);
+        sorted.put(key, m);
+    }
+
+    void remove(Media m) {
+        String key = keys.remove(m);
+        if (key != null) sorted.remove(key);
+    }
+
+    void clear() {
+        sorted.clear();
+        keys.clear();
+    }
+
+    Collection<Media> all() {
+        return Collections.unmodifiableCollection(sorted.values());
+    }
+
+    // كل القيم اللي بتبدأ بـprefix (بدون فرق بالحروف الكبيرة)
+    Collection<Media> prefix(String prefix) {
+        String from = normalize(prefix);
+        String to = successor(from);
+        return view(to == null ? sorted.tailMap(from, true) : sorted.subMap(from, true, to, false));
+    }
+
+    /** From {@code from} (inclusive) up to {@code to} (exclusive); null leaves that side open. */
+    Collection<Media> range(String from, String to) {
+        if (from == null && to == null) return all();
+        if (from == null) return view(sorted.headMap(normalize(to), false));
+        if (to == null) return view(sorted.tailMap(normalize(from), true));
+        String lo = normalize(from);
+        String hi = normalize(to);
+        if (lo.compareTo(hi) >= 0) return Collections.emptyList();
+        return view(sorted.subMap(lo, true, hi, false));
+    }
+
+    Collection<Media> exact(String value) {
+        String v = normalize(value);
+        return view(sorted.subMap(v + SEP, true, v + (char) (SEP + 1), false));
+    }
+
+    // كل اللي بعد (value, isbn) — نفس شرط الـcursor بـMediaPage
+    Collection<Media> after(String value, String isbn) {
+        return view(sorted.tailMap(value + SEP + isbn + (char) (SEP + 1), true));
+    }
+
+    int size() {
+        return sorted.size();
+    }
+
+    private static Collection<Media> view(Map<String, Media> range) {
+        return Collections.unmodifiableCollection(range.values());
+    }
+
+    // أصغر String أكبر من كل اللي بيبدأ بـprefix؛ null لو ما في (prefix فاضي أو كله \uffff)
+    private static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) end--;
+        if (end == 0) return null;
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
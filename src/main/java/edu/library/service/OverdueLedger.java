@@ -0,0 +1,182 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import edu.library.domain.time.TimeProvider;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Per-user view of overdue loans, built in one pass over the active loans and kept for the
+ * rest of the business day. Borrows and returns only mark the affected user as stale, and that
+ * user is recomputed from the active-loan index on the next read.
+ *
+ * <p>The ledger listens to its {@link BorrowRecordService} through a weak reference: a ledger
+ * nobody uses any more is dropped from the service on the next loan change, or right away on
+ * {@link #close()}.
+ */
+public class OverdueLedger {
+
+    public record OverdueItem(BorrowRecord record, Media media, int overdueDays, int fine) {
+    }
+
+    public record UserOverdue(String username, List<OverdueItem> items, int totalFine) {
+        public int count() {
+            return items.size();
+        }
+    }
+
+    private final BorrowRecordService borrowRecordService;
+    private final TimeProvider timeProvider;
+    private final Function<String, Media> mediaLookup;
+
+    // invalidate() بيجي من جوّا قفل BorrowRecordService، فما بياخذ قفل الـledger
+    private volatile LocalDate day;
+    private final Map<String, UserOverdue> byUser = new LinkedHashMap<>();
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+    private final Invalidator listener;
+
+    public OverdueLedger(BorrowRecordService borrowRecordService, TimeProvider timeProvider) {
+        this(borrowRecordService, timeProvider, isbn -> null);
+    }
+
+    public OverdueLedger(BorrowRecordService borrowRecordService, TimeProvider timeProvider,
+                         Function<String, Media> mediaLookup) {
+        this.borrowRecordService = borrowRecordService;
+        this.timeProvider = timeProvider;
+        this.mediaLookup = mediaLookup;
+        this.listener = borrowRecordService == null ? null : new Invalidator(this, borrowRecordService);
+        if (listener != null) {
+            borrowRecordService.addLoanListener(listener);
+        }
+    }
+
+    // ماسك الـledger weak عشان BorrowRecordService ما يخلّيه عايش للأبد
+    private static final class Invalidator implements Consumer<String> {
+        private final WeakReference<OverdueLedger> ledger;
+        private final BorrowRecordService source;
+
+        Invalidator(OverdueLedger ledger, BorrowRecordService source) {
+            this.ledger = new WeakReference<>(ledger);
+            this.source = source;
+        }
+
+        @Override
+        public void accept(String username) {
+            OverdueLedger target = ledger.get();
+            if (target == null) {
+                source.removeLoanListener(this);
+            } else {
+                target.invalidate(username);
+            }
+        }
+    }
+
+    /** Stops listening to loan changes; the ledger keeps answering from what it has. */
+    public void close() {
+        if (listener != null) {
+            borrowRecordService.removeLoanListener(listener);
+        }
+    }
+
+    public synchronized Map<String, UserOverdue> getAll() {
+        refresh();
+        return Collections.unmodifiableMap(new LinkedHashMap<>(byUser));
+    }
+
+    public synchronized UserOverdue forUser(String username) {
+        refresh();
+        UserOverdue entry = username == null ? null : byUser.get(username);
+        return entry != null ? entry : new UserOverdue(username, List.of(), 0);
+    }
+
+    public synchronized long overdueCount(String username) {
+        return forUser(username).count();
+    }
+
+    // بينسجّل حتى وقت الـrebuild الأول؛ rebuild بيفضّي stale قبل ما يقرأ السجلات، فأي تغيير بعدها بيضل
+    public void invalidate(String username) {
+        if (username != null) {
+            stale.add(username);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        day = null;
+        stale.clear();
+    }
+
+    private void refresh() {
+        LocalDate today = timeProvider.today();
+        if (!today.equals(day)) {
+            rebuild(today);
+            return;
+        }
+        for (Iterator<String> it = stale.iterator(); it.hasNext(); ) {
+            String username = it.next();
+            it.remove();
+            byUser.remove(username);
+            UserOverdue entry = summarize(username, borrowRecordService.getActiveBorrowRecordsForUser(username), today);
+            if (entry != null) byUser.put(username, entry);
+        }
+    }
+
+    private void rebuild(LocalDate today) {
+        stale.clear();
+        Map<String, List<BorrowRecord>> grouped = new LinkedHashMap<>();
+        // من فهرس الاستعارات الفعّالة بس: التكلفة على قد الاستعارات المفتوحة مش طول التاريخ
+        for (BorrowRecord record : borrowRecordService.activeLoans()) {
+            if (overdueDays(record, today) > 0) {
+                grouped.computeIfAbsent(record.getUsername(), k -> new ArrayList<>()).add(record);
+            }
+        }
+
+        byUser.clear();
+        for (Map.Entry<String, List<BorrowRecord>> e : grouped.entrySet()) {
+            UserOverdue entry = summarize(e.getKey(), e.getValue(), today);
+            if (entry != null) byUser.put(e.getKey(), entry);
+        }
+        day = today;
+    }
+
+    private UserOverdue summarize(String username, List<BorrowRecord> records, LocalDate today) {
+        List<OverdueItem> items = new ArrayList<>();
+        Map<String, Media> media = new HashMap<>();
+        int total = 0;
+        for (BorrowRecord record : records) {
+            int days = overdueDays(record, today);
+            if (days <= 0) continue;
+
+            Media m = media.computeIfAbsent(record.getIsbn(), mediaLookup);
+            int fine = days * ratePerDay(m);
+            items.add(new OverdueItem(record, m, days, fine));
+            total += fine;
+        }
+        return items.isEmpty() ? null : new UserOverdue(username, List.copyOf(items), total);
+    }
+
+    private static int overdueDays(BorrowRecord record, LocalDate today) {
+        return record == null ? 0 : record.overdueDays(today.toEpochDay());
+    }
+
+    // نفس أسعار updateFinesOnStartup القديمة؛ المادة اللي مش معروفة ما إلها غرامة
+    private static int ratePerDay(Media media) {
+        if (media instanceof Book) return 10;
+        if (media instanceof CD) return 20;
+        return 0;
+    }
+}
@@ -2,29 +2,37 @@ package edu.library.service;
 
 import edu.library.domain.model.BorrowRecord;
 import edu.library.domain.model.Roles;
+import edu.library.domain.notification.DeliveryReport;
+import edu.library.domain.notification.EmailDeliveryQueue;
+import edu.library.domain.notification.EmailMessage;
 import edu.library.domain.notification.EmailNotifier;
 import edu.library.domain.notification.Observer;
 import edu.library.domain.notification.SmtpEmailServer;
 import edu.library.domain.time.TimeProvider;
 
-import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class ReminderService {
     private final BorrowRecordService borrowRecordService;
     private final AuthService authService;
     private final TimeProvider timeProvider;
+    private final OverdueLedger overdueLedger;
 
     private final List<Observer> observers = new ArrayList<>();
 
     public ReminderService(BorrowRecordService borrowRecordService, AuthService authService, TimeProvider timeProvider) {
+        this(borrowRecordService, authService, timeProvider, new OverdueLedger(borrowRecordService, timeProvider));
+    }
+
+    public ReminderService(BorrowRecordService borrowRecordService, AuthService authService,
+                           TimeProvider timeProvider, OverdueLedger overdueLedger) {
         this.borrowRecordService = borrowRecordService;
         this.authService = authService;
         this.timeProvider = timeProvider;
+        this.overdueLedger = overdueLedger;
     }
 
     public void addObserver(Observer observer) {
@@ -44,6 +52,22 @@ public class ReminderService {
         }
     }
 
+    /**
+     * Same selection as {@link #sendReminders()}, but the emails go through the delivery
+     * queue instead of the observers, so the caller gets control back right away.
+     */
+    public DeliveryReport sendRemindersAsync(EmailDeliveryQueue deliveryQueue) {
+        Map<String, Long> overdueCounts = calculateOverdueCounts();
+        List<EmailMessage> messages = new ArrayList<>();
+        for (Roles user : authService.getUsers()) {
+            long overdueCount = overdueCounts.getOrDefault(user.getUsername(), 0L);
+            if (overdueCount > 0 && user.getEmail() != null && !user.getEmail().isBlank()) {
+                messages.add(new EmailMessage(user.getEmail(), reminderMessage(overdueCount)));
+            }
+        }
+        return deliveryQueue.submit(messages);
+    }
+
     public void sendReminderForUser(Roles user) {
         if (user == null) return;
         long overdueCount = countOverdueRecordsForUser(user.getUsername());
@@ -51,18 +75,14 @@ public class ReminderService {
     }
 
     private Map<String, Long> calculateOverdueCounts() {
-        return borrowRecordService.getRecords().stream()
-                .filter(record -> getOverdueDays(record) > 0)
-                .collect(Collectors.groupingBy(BorrowRecord::getUsername, Collectors.counting()));
+        Map<String, Long> counts = new HashMap<>();
+        overdueLedger.getAll().forEach((username, entry) -> counts.put(username, (long) entry.count()));
+        return counts;
     }
 
     private long countOverdueRecordsForUser(String username) {
         if (username == null) return 0;
-
-        return borrowRecordService.getRecords().stream()
-                .filter(record -> username.equals(record.getUsername()))
-                .filter(record -> getOverdueDays(record) > 0)
-                .count();
+        return overdueLedger.overdueCount(username);
     }
 
     private void sendIfOverdue(Roles user, long overdueCount) {
@@ -70,7 +90,7 @@ public class ReminderService {
             return;
         }
 
-        String message = "You have " + overdueCount + " overdue item(s).";
+        String message = reminderMessage(overdueCount);
 
         if (observers.isEmpty()) {
             observers.add(new EmailNotifier(new SmtpEmailServer()));
@@ -81,16 +101,14 @@ public class ReminderService {
         }
     }
 
-    public long getOverdueDays(BorrowRecord record) {
-        if (record == null || record.getDueDate() == null || record.isReturned()) {
-            return 0;
-        }
+    private static String reminderMessage(long overdueCount) {
+        return "You have " + overdueCount + " overdue item(s).";
+    }
 
-        LocalDate today = timeProvider.today();
-        if (!today.isAfter(record.getDueDate())) {
+    public long getOverdueDays(BorrowRecord record) {
+        if (record == null || !record.hasDueDate() || record.isReturned()) {
             return 0;
         }
-
-        return ChronoUnit.DAYS.between(record.getDueDate(), today);
+        return record.overdueDays(timeProvider.today().toEpochDay());
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package edu.library.service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * What the getAll/getRecords/getUsers style methods hand out: reads go straight to the
+ * service's immutable snapshot, and the first write makes a private copy. Callers that only
+ * iterate never copy, and callers that modify the result still can't touch the service.
+ */
+final class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+
+    private List<E> items;
+    private boolean copied;
+
+    SnapshotList(List<E> snapshot) {
+        this.items = snapshot;
+    }
+
+    @Override
+    public E get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return own().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        own().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E removed = own().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        items = new ArrayList<>();
+        copied = true;
+        modCount++;
+    }
+
+    private List<E> own() {
+        if (!copied) {
+            items = new ArrayList<>(items);
+            copied = true;
+        }
+        return items;
+    }
+}
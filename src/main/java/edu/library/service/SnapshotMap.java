@@ -0,0 +1,110 @@
+package edu.library.service;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map counterpart of {@link SnapshotList}: lookups and iteration read the immutable snapshot,
+ * and put/remove/clear first copy it into a private HashMap. Until then entries are the
+ * snapshot's own, so {@code Entry.setValue} needs {@link #put} instead. Lookups with a null
+ * key answer like a HashMap even if the snapshot (e.g. {@code Map.copyOf}) rejects them.
+ */
+final class SnapshotMap<K, V> extends AbstractMap<K, V> {
+
+    private Map<K, V> entries;
+    private boolean copied;
+
+    SnapshotMap(Map<K, V> snapshot) {
+        this.entries = snapshot;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null && !copied) return false;
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null && !copied) return null;
+        return entries.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return own().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!containsKey(key)) return null;
+        return own().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        entries = new HashMap<>();
+        copied = true;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (copied) return entries.entrySet();
+
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return SnapshotMap.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Entry<K, V>> it = entries.entrySet().iterator();
+                return new Iterator<>() {
+                    private K last;
+                    private boolean canRemove;
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!it.hasNext()) throw new NoSuchElementException();
+                        Entry<K, V> e = it.next();
+                        last = e.getKey();
+                        canRemove = true;
+                        return e;
+                    }
+
+                    // الـiterator بيكمل على الـsnapshot، والحذف بيصير على النسخة الخاصة
+                    @Override
+                    public void remove() {
+                        if (!canRemove) throw new IllegalStateException();
+                        SnapshotMap.this.remove(last);
+                        canRemove = false;
+                    }
+                };
+            }
+        };
+    }
+
+    private Map<K, V> own() {
+        if (!copied) {
+            entries = new HashMap<>(entries);
+            copied = true;
+        }
+        return entries;
+    }
+}
@@ -1,6 +1,8 @@
 package edu.library.domain.model;
 
 import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
 import java.time.LocalDate;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -198,4 +200,47 @@ class BorrowRecordTest {
         assertTrue(r.isReturned());
         assertNull(r.getReturnDate());
     }
+
+    @Test
+    void overdueDays_isPlainEpochDayArithmetic() {
+        LocalDate due = LocalDate.of(2024, 2, 27);
+        BorrowRecord r = new BorrowRecord("areej", "ISBN1", due, false, null);
+
+        assertEquals(due.toEpochDay(), r.getDueEpochDay());
+        assertEquals(0, r.overdueDays(due.toEpochDay()));
+        assertEquals(3, r.overdueDays(LocalDate.of(2024, 3, 1).toEpochDay()));
+        assertTrue(r.isDueOn(due));
+        assertFalse(r.isDueOn(null));
+
+        r.markReturned(LocalDate.of(2024, 3, 2));
+        assertEquals(0, r.overdueDays(LocalDate.of(2024, 3, 5).toEpochDay()));
+        assertEquals(LocalDate.of(2024, 3, 2), r.getReturnDate());
+
+        BorrowRecord noDue = new BorrowRecord("areej", "ISBN1", null, false, null);
+        assertFalse(noDue.hasDueDate());
+        assertEquals(0, noDue.overdueDays(Long.MAX_VALUE));
+    }
+
+    @Test
+    void usernamesAndIsbnsAreSharedBetweenRecords() {
+        BorrowRecord a = new BorrowRecord(new String("shared-user"), new String("ISBN-S"), null, false, null);
+        BorrowRecord b = new BorrowRecord(new String("shared-user"), new String("ISBN-S"), null, true, null);
+
+        assertSame(a.getUsername(), b.getUsername());
+        assertSame(a.getIsbn(), b.getIsbn());
+        assertTrue(b.isReturned());
+        assertNull(b.getReturnDate());
+    }
+
+    @Test
+    void sharedNamesAreNotKeptAliveByTheTable() throws InterruptedException {
+        WeakReference<String> name = new WeakReference<>(
+                new BorrowRecord(new String("gone-user"), new String("ISBN-G"), null, false, null).getUsername());
+
+        for (int i = 0; i < 50 && name.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(name.get(), "No record holds the name any more, so the table lets it go");
+    }
 }
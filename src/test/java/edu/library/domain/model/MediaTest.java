@@ -3,6 +3,7 @@ package edu.library.domain.model;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -202,4 +203,48 @@ class MediaTest {
         assertTrue(s.contains("Author"));
         assertTrue(s.contains("ISBN"));
     }
+
+    @Test
+    void tryBorrowOne_neverOverbooksUnderContention() throws InterruptedException {
+        DummyMedia m = new DummyMedia("Book", "Author", "ISBN", 5);
+        AtomicInteger granted = new AtomicInteger();
+
+        Thread[] desks = new Thread[8];
+        for (int i = 0; i < desks.length; i++) {
+            desks[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    if (m.tryBorrowOne()) granted.incrementAndGet();
+                }
+            });
+            desks[i].start();
+        }
+        for (Thread desk : desks) desk.join();
+
+        assertEquals(5, granted.get());
+        assertEquals(0, m.getAvailableCopies());
+        assertTrue(m.tryReturnOne());
+        assertFalse(new DummyMedia("Full", "A", "I", 2).tryReturnOne());
+    }
+
+    @Test
+    void availabilityListener_firesOnlyWhenShelfStatusFlips() {
+        DummyMedia m = new DummyMedia("T", "A", "I", 2);
+        AtomicInteger calls = new AtomicInteger();
+        m.setAvailabilityListener(media -> calls.incrementAndGet());
+
+        m.borrowOne();
+        assertEquals(0, calls.get());
+        m.borrowOne();
+        assertEquals(1, calls.get());
+        m.returnOne();
+        assertEquals(2, calls.get());
+        m.setTotalCopies(0);
+        assertEquals(3, calls.get());
+        m.setTotalCopies(3);
+        m.setAvailable(true);
+        assertEquals(4, calls.get());
+        m.setAvailableCopies(1);
+        m.addCopies(1, 1);
+        assertEquals(4, calls.get());
+    }
 }
@@ -0,0 +1,127 @@
+package edu.library.domain.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailDeliveryQueueTest {
+
+    // سيرفر وهمي: بيفشل لعنوان معيّن أول N مرات
+    private static class FakeEmailServer implements EmailServer {
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, Integer> failuresLeft = new HashMap<>();
+
+        @Override
+        public void sendEmail(String to, String message) {
+            synchronized (failuresLeft) {
+                int left = failuresLeft.getOrDefault(to, 0);
+                if (left != 0) {
+                    failuresLeft.put(to, left - 1);
+                    throw new RuntimeException("Mailbox unavailable: " + to);
+                }
+            }
+            delivered.add(to);
+        }
+
+        @Override
+        public List<EmailMessage> sendBatch(List<EmailMessage> messages) {
+            batchSizes.add(messages.size());
+            return EmailServer.super.sendBatch(messages);
+        }
+    }
+
+    private static List<EmailMessage> messages(int count) {
+        List<EmailMessage> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new EmailMessage("user" + i + "@mail.com", "You have 1 overdue item(s)."));
+        }
+        return list;
+    }
+
+    @Test
+    void submit_deliversAllMessagesInBatches() throws InterruptedException {
+        FakeEmailServer server = new FakeEmailServer();
+        DeliveryReport report;
+        try (EmailDeliveryQueue queue = new EmailDeliveryQueue(server, 2, 100, 10, 3, 1)) {
+            report = queue.submit(messages(45));
+            assertTrue(report.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(45, report.getTotal());
+        assertEquals(45, report.getSentCount());
+        assertEquals(0, report.getFailedCount());
+        assertEquals(45, server.delivered.size());
+        assertTrue(server.batchSizes.stream().allMatch(size -> size <= 10));
+    }
+
+    @Test
+    void failedRecipient_isRetriedUntilItGoesThrough() throws InterruptedException {
+        FakeEmailServer server = new FakeEmailServer();
+        server.failuresLeft.put("user1@mail.com", 2);
+
+        try (EmailDeliveryQueue queue = new EmailDeliveryQueue(server, 1, 10, 5, 3, 1)) {
+            DeliveryReport report = queue.submit(messages(3));
+            assertTrue(report.await(5, TimeUnit.SECONDS));
+
+            assertEquals(3, report.getSentCount());
+            assertEquals(0, report.getFailedCount());
+            assertEquals(1, Collections.frequency(server.delivered, "user1@mail.com"));
+        }
+    }
+
+    @Test
+    void recipientStillFailingAfterMaxAttempts_isReportedAsFailed() throws Exception {
+        FakeEmailServer server = new FakeEmailServer();
+        server.failuresLeft.put("user0@mail.com", -1);
+
+        try (EmailDeliveryQueue queue = new EmailDeliveryQueue(server, 2, 10, 5, 2, 1)) {
+            DeliveryReport report = queue.submit(messages(2)).toFuture().get(5, TimeUnit.SECONDS);
+
+            assertEquals(1, report.getSentCount());
+            assertEquals(1, report.getFailedCount());
+            assertEquals("user0@mail.com", report.getFailedMessages().get(0).to());
+        }
+    }
+
+    @Test
+    void serverThrowingForWholeBatch_countsEveryMessageAsFailed() throws InterruptedException {
+        EmailServer broken = new EmailServer() {
+            @Override
+            public void sendEmail(String to, String message) {
+            }
+
+            @Override
+            public List<EmailMessage> sendBatch(List<EmailMessage> messages) {
+                throw new RuntimeException("Connection refused");
+            }
+        };
+
+        try (EmailDeliveryQueue queue = new EmailDeliveryQueue(broken, 1, 10, 5, 1, 0)) {
+            DeliveryReport report = queue.submit(messages(4));
+            assertTrue(report.await(5, TimeUnit.SECONDS));
+            assertEquals(4, report.getFailedCount());
+        }
+    }
+
+    @Test
+    void submit_skipsInvalidMessagesAndRejectsAfterClose() {
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(new FakeEmailServer());
+        List<EmailMessage> input = new ArrayList<>();
+        input.add(null);
+        input.add(new EmailMessage(" ", "x"));
+        DeliveryReport report = queue.submit(input);
+        assertEquals(0, report.getTotal());
+        assertTrue(report.isDone());
+
+        queue.close();
+        assertThrows(IllegalStateException.class, () -> queue.submit(messages(1)));
+    }
+}
@@ -8,6 +8,7 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -299,4 +300,45 @@ class SmtpEmailServerUltimateTest {
         assertEquals("", server.getFromAddress()); // لأنه username == ""
     }
 
+    private Transport mockTransport(MockedStatic<Session> sessions) throws MessagingException {
+        Session session = Mockito.mock(Session.class);
+        Transport transport = Mockito.mock(Transport.class);
+        Mockito.when(session.getProperties()).thenReturn(new Properties());
+        Mockito.when(session.getTransport("smtp")).thenReturn(transport);
+        sessions.when(() -> Session.getInstance(Mockito.any(Properties.class), Mockito.any(Authenticator.class)))
+                .thenReturn(session);
+        return transport;
+    }
+
+    @Test
+    void sendBatch_closeFailsAfterDelivery_nothingIsReportedFailed() throws MessagingException {
+        SmtpEmailServer server = new SmtpEmailServer(defaultSettings);
+        try (MockedStatic<Session> sessions = Mockito.mockStatic(Session.class)) {
+            Transport transport = mockTransport(sessions);
+            Mockito.doThrow(new MessagingException("connection reset")).when(transport).close();
+
+            List<EmailMessage> failed = server.sendBatch(List.of(
+                    new EmailMessage("a@example.com", "one"),
+                    new EmailMessage("b@example.com", "two")));
+
+            assertTrue(failed.isEmpty());
+            Mockito.verify(transport, Mockito.times(2)).sendMessage(Mockito.any(), Mockito.any());
+        }
+    }
+
+    @Test
+    void sendBatch_connectFails_wholeBatchIsFailed() throws MessagingException {
+        SmtpEmailServer server = new SmtpEmailServer(defaultSettings);
+        try (MockedStatic<Session> sessions = Mockito.mockStatic(Session.class)) {
+            Transport transport = mockTransport(sessions);
+            Mockito.doThrow(new MessagingException("refused"))
+                    .when(transport).connect(Mockito.anyString(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString());
+            List<EmailMessage> batch = List.of(
+                    new EmailMessage("a@example.com", "one"),
+                    new EmailMessage("b@example.com", "two"));
+
+            assertEquals(batch, server.sendBatch(batch));
+            Mockito.verify(transport, Mockito.never()).sendMessage(Mockito.any(), Mockito.any());
+        }
+    }
 }
@@ -5,6 +5,7 @@ import edu.library.domain.model.CD;
 import edu.library.domain.model.Media;
 import edu.library.domain.model.Roles;
 import edu.library.service.AuthService;
+import edu.library.service.MediaPage;
 import edu.library.service.MediaService;
 import edu.library.service.ReminderService;
 import org.junit.jupiter.api.BeforeEach;
@@ -131,10 +132,12 @@ class AdminTest {
     @Test
     void testDisplayAllBooks() {
         provideInput("3\n");
-        when(mediaService.getAllMedia()).thenReturn(List.of(
+        List<Media> catalog = List.of(
                 new Book("B1","A1","1"),
                 new CD("C1","Artist1","2")
-        ));
+        );
+        when(mediaService.listMedia(Book.class, MediaPage.Sort.TITLE, null, Member.PAGE_SIZE))
+                .thenReturn(MediaPage.of(catalog, Book.class, MediaPage.Sort.TITLE, null, Member.PAGE_SIZE));
 
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
@@ -151,10 +154,12 @@ class AdminTest {
     @Test
     void testDisplayAllCDs() {
         provideInput("13\n");
-        when(mediaService.getAllMedia()).thenReturn(List.of(
+        List<Media> catalog = List.of(
                 new CD("C1","Artist1","2"),
                 new Book("B1","A1","1")
-        ));
+        );
+        when(mediaService.listMedia(CD.class, MediaPage.Sort.TITLE, null, Member.PAGE_SIZE))
+                .thenReturn(MediaPage.of(catalog, CD.class, MediaPage.Sort.TITLE, null, Member.PAGE_SIZE));
 
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
@@ -544,4 +544,38 @@ class LibrarianTest {
         assertTrue(output.contains("000"));
     }
 
+    @Test
+    void testDisplayBorrowRecords_StreamsArchivedHistoryFirst() {
+        BorrowRecord archived = new BorrowRecord("oldUser", "111", LocalDate.of(2020, 1, 1), true, LocalDate.of(2020, 1, 2));
+        BorrowRecord active = new BorrowRecord("newUser", "222", LocalDate.now().plusDays(3), false, null);
+
+        BorrowRecordService borrowService = mock(BorrowRecordService.class);
+        when(borrowService.streamArchivedRecords()).thenReturn(java.util.stream.Stream.of(archived));
+        when(borrowService.getAllRecords()).thenReturn(List.of(active));
+        MediaService service = mock(MediaService.class);
+        when(service.getBorrowRecordService()).thenReturn(borrowService);
+
+        Librarian.displayBorrowRecords(service);
+
+        String output = outContent.toString();
+        assertTrue(output.indexOf("oldUser") < output.indexOf("newUser"));
+        assertTrue(output.contains("No overdue items detected"));
+    }
+
+
+    @Test
+    void testDisplayBorrowRecords_ReadsMappedHistoryWhenAvailable(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) {
+        BorrowRecordService borrowService = new BorrowRecordService(dir.resolve("records.txt").toString());
+        borrowService.recordBorrow("late", "111", LocalDate.now().minusDays(2));
+        borrowService.recordBorrow("onTime", "222", LocalDate.now().plusDays(3));
+        MediaService service = mock(MediaService.class);
+        when(service.getBorrowRecordService()).thenReturn(borrowService);
+
+        Librarian.displayBorrowRecords(service);
+
+        String output = outContent.toString();
+        assertTrue(output.indexOf("late") < output.indexOf("onTime"));
+        assertTrue(output.contains("Overdue by 2 day(s)"));
+    }
+
 }
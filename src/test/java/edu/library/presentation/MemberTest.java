@@ -511,4 +511,25 @@ class MemberTest {
         assertEquals(0, runMemberWithInput("-5\n"));
     }
 
+
+    @Test
+    void testDisplayAllBooks_pagesByTitleUntilStopped() {
+        for (int i = 10; i < 35; i++) service.addMedia(new Book("Paged " + i, "Author", "P-" + i, 1));
+
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            assertEquals(0, runMemberWithInput("4\nq\n"));
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        String output = out.toString();
+        assertTrue(output.contains("Java Programming"));
+        assertTrue(output.contains("Paged 28"));
+        assertFalse(output.contains("Paged 29"), "The second page is only printed on request");
+        assertFalse(output.contains("Java CD"));
+        assertTrue(output.contains("Press Enter for more"));
+    }
 }
@@ -287,4 +287,36 @@ class AuthServiceTest {
         assertNull(auth.addUser("user", "pass", "MEMBER", ""), "Expected null when email is empty");
     }
 
+
+    @Test
+    void login_onlyStoresBalanceWithoutForcingFullSave() {
+        assertNotNull(authService.login("member1", "pwd1"));
+
+        verify(fineService).storeBalanceOnLogin("member1");
+        verify(fineService, never()).saveBalances();
+    }
+
+    @Test
+    void existsIgnoreCase_usesIndexKeptInStepWithAddRemoveAndReload() {
+        assertTrue(authService.existsIgnoreCase("MEMBER1"));
+        assertTrue(authService.userExists("Member2"));
+        assertFalse(authService.existsIgnoreCase("nobody"));
+        assertFalse(authService.existsIgnoreCase(null));
+
+        assertTrue(authService.removeUser("MEMBER1"));
+        assertFalse(authService.existsIgnoreCase("member1"));
+        assertNull(authService.login("member1", "pwd1"));
+
+        authService.addUser("NewUser", "pw", "MEMBER", "new@example.com");
+        AuthService reloaded = new AuthService(usersFile.toString(), fineService);
+        assertTrue(reloaded.existsIgnoreCase("newuser"));
+        assertFalse(reloaded.existsIgnoreCase("member1"));
+    }
+
+    @Test
+    void login_isStillCaseSensitiveOnUsername() {
+        assertNull(authService.login("MEMBER2", "pwd2"));
+        assertNotNull(authService.login("member2", "pwd2"));
+        assertNull(authService.login("member2", "wrong"));
+    }
 }
@@ -0,0 +1,178 @@
+package edu.library.service;
+
+import edu.library.domain.model.BorrowRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BorrowHistoryFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BorrowRecordService serviceWithArchive() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Files.write(file, List.of(
+                "old,ISBN1,2020-01-01,true,2020-01-05",
+                "bob,ISBN2,2020-03-01,true,2020-03-02",
+                "bob,ISBN1,2030-01-01,false,null",
+                "alice,ISBN2,2029-06-01,false,null",
+                "bob,ISBN3,null,false,null"
+        ));
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+        service.compactHistory();
+        return service;
+    }
+
+    private static List<String> users(BorrowHistoryFile.Cursor c) {
+        List<String> result = new ArrayList<>();
+        while (c.next()) result.add(c.getUsername() + ":" + c.getIsbn());
+        return result;
+    }
+
+    @Test
+    void openHistory_coversArchiveAndHotRecordsSortedByDueDate() throws IOException {
+        BorrowRecordService service = serviceWithArchive();
+        assertTrue(Files.exists(tempDir.resolve("records.txt.archive.2020-01")));
+
+        BorrowHistoryFile history = service.openHistory();
+        assertEquals(5, history.size());
+        assertEquals(List.of("bob:ISBN3", "old:ISBN1", "bob:ISBN2", "alice:ISBN2", "bob:ISBN1"),
+                users(history.cursor(BorrowHistoryFile.Filter.ALL)));
+
+        BorrowHistoryFile.Cursor first = history.cursor(BorrowHistoryFile.Filter.byIsbn("ISBN1"));
+        assertTrue(first.next());
+        BorrowRecord record = first.toRecord();
+        assertEquals("old", record.getUsername());
+        assertTrue(record.isReturned());
+        assertEquals(LocalDate.of(2020, 1, 5), record.getReturnDate());
+    }
+
+    @Test
+    void filters_byUserIsbnAndDateRange() throws IOException {
+        BorrowHistoryFile history = serviceWithArchive().openHistory();
+
+        assertEquals(List.of("bob:ISBN3", "bob:ISBN2", "bob:ISBN1"),
+                users(history.cursor(BorrowHistoryFile.Filter.byUser("bob"))));
+        assertEquals(List.of("bob:ISBN2", "alice:ISBN2"),
+                users(history.cursor(BorrowHistoryFile.Filter.byIsbn("ISBN2"))));
+        assertEquals(List.of("bob:ISBN2"),
+                users(history.cursor(new BorrowHistoryFile.Filter("bob", "ISBN2", null, null))));
+        assertEquals(List.of("old:ISBN1", "bob:ISBN2"),
+                users(history.cursor(BorrowHistoryFile.Filter.dueBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31)))));
+        assertEquals(List.of("bob:ISBN1"),
+                users(history.cursor(new BorrowHistoryFile.Filter("bob", null, LocalDate.of(2025, 1, 1), null))));
+        assertEquals(List.of("old:ISBN1", "bob:ISBN2", "alice:ISBN2"),
+                users(history.cursor(BorrowHistoryFile.Filter.dueBetween(null, LocalDate.of(2029, 6, 1)))),
+                "Undated loans are left out once a date bound is set");
+
+        assertEquals(0, history.count(BorrowHistoryFile.Filter.byUser("nobody")));
+        assertEquals(0, history.count(BorrowHistoryFile.Filter.dueBetween(LocalDate.of(2021, 1, 1), LocalDate.of(2020, 1, 1))));
+    }
+
+    @Test
+    void pagination_skipsAndLimitsMatches() throws IOException {
+        BorrowHistoryFile history = serviceWithArchive().openHistory();
+
+        List<BorrowRecord> page = history.page(BorrowHistoryFile.Filter.ALL, 1, 2);
+        assertEquals(2, page.size());
+        assertEquals("old", page.get(0).getUsername());
+        assertEquals("bob", page.get(1).getUsername());
+
+        assertEquals(List.of("bob:ISBN1"), users(history.cursor(BorrowHistoryFile.Filter.byUser("bob"), 2, 10)));
+        assertTrue(history.page(BorrowHistoryFile.Filter.ALL, 5, 10).isEmpty());
+        assertEquals(3, history.count(BorrowHistoryFile.Filter.byUser("bob")));
+    }
+
+    @Test
+    void openHistory_isReusedUntilALoanChanges() throws IOException {
+        BorrowRecordService service = serviceWithArchive();
+        BorrowHistoryFile first = service.openHistory();
+        assertSame(first, service.openHistory());
+
+        service.recordBorrow("carol", "ISBN9", LocalDate.of(2031, 1, 1));
+        BorrowHistoryFile second = service.openHistory();
+        assertNotSame(first, second);
+        assertEquals(6, second.size());
+        assertEquals(5, first.size(), "An already opened file keeps its own view");
+
+        service.recordReturn("carol", "ISBN9", LocalDate.of(2031, 1, 2));
+        BorrowHistoryFile third = service.openHistory();
+        BorrowHistoryFile.Cursor c = third.cursor(BorrowHistoryFile.Filter.byUser("carol"));
+        assertTrue(c.next());
+        assertTrue(c.isReturned());
+    }
+
+    @Test
+    void cursor_requiresNextAndRejectsForeignFiles() throws IOException {
+        BorrowHistoryFile history = serviceWithArchive().openHistory();
+        BorrowHistoryFile.Cursor c = history.cursor(BorrowHistoryFile.Filter.ALL);
+        assertThrows(IllegalStateException.class, c::getUsername);
+
+        Path junk = tempDir.resolve("junk.history");
+        Files.writeString(junk, "not a history file at all, just some text");
+        assertThrows(IOException.class, () -> BorrowHistoryFile.open(junk));
+    }
+
+    @Test
+    void newLoans_areMergedWithoutRewritingMappedSegments() throws IOException {
+        BorrowRecordService service = serviceWithArchive();
+        Path index = tempDir.resolve("records.txt.history.2020-01");
+        assertTrue(Files.exists(index));
+        assertTrue(Files.exists(tempDir.resolve("records.txt.history.2020-03")));
+        Files.setLastModifiedTime(index, FileTime.fromMillis(0));
+
+        service.recordBorrow("carol", "ISBN9", LocalDate.of(2020, 2, 1));
+        BorrowHistoryFile history = service.openHistory();
+        assertEquals(FileTime.fromMillis(0), Files.getLastModifiedTime(index), "Segment index is not rebuilt");
+        assertEquals(List.of("old:ISBN1", "carol:ISBN9", "bob:ISBN2"), users(history.cursor(
+                BorrowHistoryFile.Filter.dueBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31)))));
+        assertFalse(Files.exists(tempDir.resolve("records.txt.history")));
+
+        // بعد restart الـindex اللي على الديسك بينعاد استخدامه
+        BorrowRecordService restarted = new BorrowRecordService(tempDir.resolve("records.txt").toString());
+        assertEquals(6, restarted.openHistory().size());
+        assertEquals(FileTime.fromMillis(0), Files.getLastModifiedTime(index));
+    }
+
+    @Test
+    void compaction_writesTheSegmentIndexes_andOpeningHistoryWritesNothing() throws IOException {
+        BorrowRecordService service = serviceWithArchive();
+        List<Path> before = listFiles();
+        assertTrue(before.contains(tempDir.resolve("records.txt.history.2020-01")));
+        assertTrue(before.contains(tempDir.resolve("records.txt.history.2020-03")));
+
+        assertEquals(5, service.openHistory().size());
+        assertEquals(before, listFiles());
+    }
+
+    @Test
+    void segmentWithoutIndex_fallsBackToStreamingUntilTheNextCompaction() throws IOException {
+        BorrowRecordService service = serviceWithArchive();
+        Path index = tempDir.resolve("records.txt.history.2020-03");
+        Files.delete(index);
+
+        BorrowRecordService restarted = new BorrowRecordService(tempDir.resolve("records.txt").toString());
+        assertNull(restarted.openHistory());
+        assertFalse(Files.exists(index), "Reading never builds an index");
+
+        restarted.compactHistory();
+        assertTrue(Files.exists(index));
+        assertEquals(5, restarted.openHistory().size());
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (var files = Files.list(tempDir)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package edu.library.service;
 
 import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.time.TimeProvider;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -18,6 +19,13 @@ class BorrowRecordServiceTest {
     @TempDir
     Path tempDir;
 
+    // كل الإرجاعات بـ2025-12 لسا جديدة بالنسبة لهاد اليوم
+    private final TimeProvider december = () -> LocalDate.of(2025, 12, 20);
+
+    private BorrowRecordService openAt(Path file, TimeProvider time) {
+        return new BorrowRecordService(file.toString(), 1000, 30, time);
+    }
+
     @Test
     void recordBorrow_createsNewRecord() {
         Path file = tempDir.resolve("records.txt");
@@ -366,7 +374,7 @@ class BorrowRecordServiceTest {
                 "user2,ISBN2,2025-12-10,true,2025-12-05"
         ));
 
-        BorrowRecordService service = new BorrowRecordService(file.toString());
+        BorrowRecordService service = openAt(file, december);
         List<BorrowRecord> records = service.getRecords();
 
         assertEquals(2, records.size());
@@ -382,4 +390,231 @@ class BorrowRecordServiceTest {
         assertEquals(LocalDate.of(2025,12,5), r2.getReturnDate());
     }
 
+    @Test
+    void activeIndexes_followBorrowReturnAndReload() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Files.write(file, List.of(
+                "user1,ISBN1,2025-12-01,true,2025-11-30",
+                "user1,ISBN2,2025-12-10,false,null",
+                "User1,ISBN3,2025-12-11,false,null"
+        ));
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+
+        assertNull(service.findActiveBorrowRecord("user1", "ISBN1"), "Returned history is not active");
+        assertEquals(1, service.getActiveBorrowRecordsForUser("user1").size());
+        assertEquals(2, service.getActiveBorrowRecordsForUserIgnoreCase("USER1").size());
+
+        service.recordBorrow("user1", "ISBN2", LocalDate.of(2025, 12, 20));
+        service.recordReturn("user1", "ISBN2", LocalDate.of(2025, 12, 12));
+
+        BorrowRecord remaining = service.findActiveBorrowRecord("user1", "ISBN2");
+        assertNotNull(remaining, "Second loan of the same ISBN stays active");
+        assertEquals(LocalDate.of(2025, 12, 20), remaining.getDueDate());
+
+        service.closeRecord("user1", "ISBN2");
+        service.closeRecord("User1", "ISBN3");
+        assertFalse(service.hasActiveBorrows("user1"));
+        assertFalse(service.hasActiveBorrows("User1"));
+        assertTrue(service.getActiveBorrowRecordsForUserIgnoreCase("user1").isEmpty());
+    }
+
+    @Test
+    void activeIndexes_ignoreRecordsReturnedDirectly() {
+        Path file = tempDir.resolve("records.txt");
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+
+        BorrowRecord record = new BorrowRecord("user9", "ISBN9", LocalDate.now(), false, null);
+        service.addBorrowRecord(record);
+        assertSame(record, service.findActiveBorrowRecord("user9", "ISBN9"));
+
+        record.markReturned(LocalDate.now());
+        assertNull(service.findActiveBorrowRecord("user9", "ISBN9"));
+        assertFalse(service.hasActiveBorrows("user9"));
+    }
+
+    @Test
+    void recordReturn_appendsReturnEntryInsteadOfRewriting() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+        service.recordBorrow("user1", "ISBN1", LocalDate.of(2025, 12, 10));
+        service.recordBorrow("user2", "ISBN2", LocalDate.of(2025, 12, 11));
+        List<String> before = Files.readAllLines(file);
+
+        service.recordReturn("user1", "ISBN1", LocalDate.of(2025, 12, 9));
+
+        assertEquals(before, Files.readAllLines(file), "Main file must not be rewritten on return");
+        assertEquals(List.of("user1,ISBN1,2025-12-10,2025-12-09"),
+                Files.readAllLines(tempDir.resolve("records.txt.returns")));
+
+        BorrowRecordService reloaded = openAt(file, december);
+        BorrowRecord returned = reloaded.getRecords().get(0);
+        assertTrue(returned.isReturned());
+        assertEquals(LocalDate.of(2025, 12, 9), returned.getReturnDate());
+        assertNull(reloaded.findActiveBorrowRecord("user1", "ISBN1"));
+        assertNotNull(reloaded.findActiveBorrowRecord("user2", "ISBN2"));
+    }
+
+    @Test
+    void returnJournal_matchesLoanByDueDate() {
+        Path file = tempDir.resolve("records.txt");
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+        service.recordBorrow("user1", "ISBN1", LocalDate.of(2025, 12, 1));
+        service.recordBorrow("user1", "ISBN1", LocalDate.of(2025, 12, 20));
+        service.recordReturn("user1", "ISBN1", LocalDate.of(2025, 12, 2));
+
+        BorrowRecordService reloaded = new BorrowRecordService(file.toString());
+        BorrowRecord active = reloaded.findActiveBorrowRecord("user1", "ISBN1");
+        assertEquals(LocalDate.of(2025, 12, 20), active.getDueDate());
+    }
+
+    @Test
+    void compactHistory_movesOldClosedLoansToMonthlySegments() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        LocalDate today = LocalDate.of(2025, 12, 20);
+        LocalDate longAgo = today.minusDays(100);
+        BorrowRecordService service = new BorrowRecordService(file.toString(), 100, 30, () -> today);
+        service.recordBorrow("user1", "ISBN1", longAgo);
+        service.recordBorrow("user2", "ISBN2", today.plusDays(5));
+        service.recordBorrow("user3", "ISBN3", today);
+        service.recordReturn("user1", "ISBN1", longAgo);
+        service.closeRecord("user3", "ISBN3");
+        service.compactHistory();
+
+        List<String> hot = Files.readAllLines(file);
+        assertEquals(2, hot.size(), "Active and recently returned loans stay hot");
+        assertTrue(hot.get(0).startsWith("user2,ISBN2"));
+        Path segment = tempDir.resolve("records.txt.archive." + java.time.YearMonth.from(longAgo));
+        assertEquals(List.of("user1,ISBN1," + longAgo + ",true," + longAgo), Files.readAllLines(segment));
+        assertFalse(Files.exists(tempDir.resolve("records.txt.returns")));
+
+        assertEquals(2, service.getAllRecords().size(), "Archived loans leave memory after compaction");
+
+        BorrowRecordService reloaded = new BorrowRecordService(file.toString(), 100, 30, () -> today);
+        assertEquals(2, reloaded.getRecords().size());
+        assertTrue(reloaded.hasActiveBorrows("user2"));
+        try (var archived = reloaded.streamArchivedRecords()) {
+            List<BorrowRecord> cold = archived.toList();
+            assertEquals(1, cold.size());
+            assertEquals("user1", cold.get(0).getUsername());
+        }
+    }
+
+    @Test
+    void compactHistory_archivesColdHistoryAlreadyInMainFile() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Files.write(file, List.of(
+                "old,ISBN1,2020-01-01,true,2020-01-05",
+                "undated,ISBN2,2020-02-01,true,null",
+                "active,ISBN3,2030-01-01,false,null"
+        ));
+
+        BorrowRecordService service = new BorrowRecordService(file.toString());
+        service.compactHistory();
+
+        assertEquals(List.of("active,ISBN3,2030-01-01,false,null"), Files.readAllLines(file));
+        assertTrue(Files.exists(tempDir.resolve("records.txt.archive.2020-01")));
+        try (var archived = service.streamArchivedRecords()) {
+            assertEquals(List.of("undated", "old"),
+                    archived.map(BorrowRecord::getUsername).toList());
+        }
+        assertEquals(1, service.getAllRecords().size());
+    }
+
+    @Test
+    void snapshotRecords_isSharedUntilChange_andGetRecordsCopiesOnWrite() {
+        BorrowRecordService service = new BorrowRecordService(tempDir.resolve("snap.txt").toString());
+        service.recordBorrow("user1", "ISBN1", LocalDate.now().plusDays(3));
+
+        List<BorrowRecord> first = service.snapshotRecords();
+        assertSame(first, service.snapshotRecords());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(null));
+
+        List<BorrowRecord> view = service.getRecords();
+        view.add(new BorrowRecord("ghost", "ISBN9", null, false, null));
+        assertEquals(2, view.size());
+        assertSame(first, service.snapshotRecords(), "Writing to a handed-out list never reaches the service");
+
+        service.recordBorrow("user2", "ISBN2", LocalDate.now().plusDays(3));
+        assertNotSame(first, service.snapshotRecords());
+        assertEquals(1, first.size());
+        assertEquals(2, service.streamRecords().count());
+        assertTrue(service.anyActiveLoan("user2", r -> r.getIsbn().equals("ISBN2")));
+        assertFalse(service.anyActiveLoan("USER2", r -> r.getIsbn().equals("ISBN2")), "Same exact-case match as getActiveBorrowRecordsForUser");
+        assertFalse(service.anyActiveLoan("user2", r -> r.getIsbn().equals("ISBN1")));
+    }
+
+    @Test
+    void load_neverArchives_coldRowsWaitForCompactHistory() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        List<String> rows = List.of(
+                "old,ISBN1,2020-01-01,true,2020-01-05",
+                "active,ISBN3,2030-01-01,false,null"
+        );
+        Files.write(file, rows);
+
+        BorrowRecordService service = openAt(file, december);
+
+        assertEquals(rows, Files.readAllLines(file));
+        assertFalse(Files.exists(tempDir.resolve("records.txt.archive.2020-01")));
+        assertEquals(2, service.getRecords().size());
+
+        service.compactHistory();
+
+        assertEquals(List.of("active,ISBN3,2030-01-01,false,null"), Files.readAllLines(file));
+        assertEquals(List.of("old,ISBN1,2020-01-01,true,2020-01-05"),
+                Files.readAllLines(tempDir.resolve("records.txt.archive.2020-01")));
+        assertEquals(1, service.getRecords().size());
+    }
+
+    @Test
+    void interruptedCompaction_isFinishedWithoutArchivingTwice() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Path segment = tempDir.resolve("records.txt.archive.2020-01");
+        String cold = "old,ISBN1,2020-01-01,true,2020-01-05";
+        Files.write(segment, List.of("older,ISBN0,2020-01-01,true,2020-01-02"));
+        long before = Files.size(segment);
+        // توقّف بعد ما انكتب الـpending وقبل ما يتبدّل الملف الحار أو يكمل الـappend
+        Files.write(file, List.of(cold, "active,ISBN3,2030-01-01,false,null"));
+        Files.write(segment, (cold.substring(0, 10)).getBytes(), java.nio.file.StandardOpenOption.APPEND);
+        Files.write(tempDir.resolve("records.txt.archive-pending"), List.of("#2020-01," + before, cold));
+
+        BorrowRecordService service = openAt(file, december);
+        service.compactHistory();
+
+        assertEquals(List.of("active,ISBN3,2030-01-01,false,null"), Files.readAllLines(file));
+        assertEquals(List.of("older,ISBN0,2020-01-01,true,2020-01-02", cold), Files.readAllLines(segment));
+        assertFalse(Files.exists(tempDir.resolve("records.txt.archive-pending")));
+    }
+
+    @Test
+    void pendingArchiveAlreadyApplied_isNotAppendedAgain() throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Path segment = tempDir.resolve("records.txt.archive.2020-01");
+        String cold = "old,ISBN1,2020-01-01,true,2020-01-05";
+        // الملف الحار اتبدّل والـsegment كمل، بس الـpending ما انحذف
+        Files.write(file, List.of("active,ISBN3,2030-01-01,false,null"));
+        Files.write(segment, List.of(cold));
+        Files.write(tempDir.resolve("records.txt.archive-pending"), List.of("#2020-01,0", cold));
+
+        openAt(file, december).compactHistory();
+
+        assertEquals(List.of(cold), Files.readAllLines(segment));
+        assertEquals(List.of("active,ISBN3,2030-01-01,false,null"), Files.readAllLines(file));
+        assertFalse(Files.exists(tempDir.resolve("records.txt.archive-pending")));
+    }
+
+    @Test
+    void activeLoans_listsOnlyOpenLoansGroupedByUser() {
+        BorrowRecordService service = openAt(tempDir.resolve("records.txt"), december);
+        service.recordBorrow("user1", "ISBN1", LocalDate.of(2025, 12, 25));
+        service.recordBorrow("user2", "ISBN2", LocalDate.of(2025, 12, 26));
+        service.recordBorrow("USER1", "ISBN3", LocalDate.of(2025, 12, 27));
+        service.recordReturn("user2", "ISBN2", LocalDate.of(2025, 12, 20));
+
+        List<String> open = service.activeLoans().stream()
+                .map(r -> r.getUsername() + ":" + r.getIsbn())
+                .toList();
+
+        assertEquals(List.of("user1:ISBN1", "USER1:ISBN3"), open);
+    }
 }
@@ -0,0 +1,126 @@
+package edu.library.service;
+
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarCatalogTest {
+
+    @Test
+    void add_returnsARowThatReadsBackEveryField() {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        CD source = new CD("Kind of Blue", "Miles Davis", "CD-1", 3);
+        source.setAvailableCopies(1);
+        source.setDueDate(LocalDate.of(2025, 3, 9));
+
+        Media row = catalog.add(source);
+
+        assertNotSame(source, row);
+        assertInstanceOf(CD.class, row);
+        assertEquals("Kind of Blue", row.getTitle());
+        assertEquals("Miles Davis", row.getAuthor());
+        assertEquals("CD-1", row.getIsbn());
+        assertEquals(3, row.getTotalCopies());
+        assertEquals(1, row.getAvailableCopies());
+        assertEquals(LocalDate.of(2025, 3, 9), row.getDueDate());
+        assertEquals(source.toString(), row.toString());
+        assertTrue(catalog.owns(row));
+        assertSame(row, catalog.add(row), "A row of this catalog is not copied again");
+    }
+
+    @Test
+    void rows_writeTheirCountersAndDueDateIntoTheColumns() {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        Media row = catalog.add(new Book("Dune", "Herbert", "B-1", 2));
+        AtomicInteger changes = new AtomicInteger();
+        row.setAvailabilityListener(m -> changes.incrementAndGet());
+
+        assertTrue(row.tryBorrowOne());
+        assertTrue(row.tryBorrowOne());
+        assertFalse(row.tryBorrowOne());
+        row.setDueDate(LocalDate.of(2025, 1, 2));
+        assertEquals(LocalDate.of(2025, 1, 2), row.getDueDate());
+
+        row.addCopies(3, 1);
+        assertEquals(5, row.getTotalCopies());
+        assertEquals(1, row.getAvailableCopies());
+        row.setTotalCopies(0);
+        assertEquals(0, row.getAvailableCopies());
+        row.setDueDate(null);
+        assertNull(row.getDueDate());
+        assertEquals(3, changes.get(), "empty, back on the shelf, empty again");
+    }
+
+    @Test
+    void authorsAreStoredOnce_andTextSurvivesUnicodeNullsAndHugeTitles() {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        String huge = "x".repeat(3 << 20);
+        Media a = catalog.add(new Book("ألف ليلة وليلة", "مجهول", "AR-1", 1));
+        Media b = catalog.add(new Book("Second", new String("مجهول"), "AR-2", 1));
+        Media c = catalog.add(new Book(huge, null, "BIG", 1));
+        Media d = catalog.add(new CD("After", "مجهول", null, 1));
+
+        assertEquals("ألف ليلة وليلة", a.getTitle());
+        assertSame(a.getAuthor(), b.getAuthor());
+        assertEquals(1, catalog.authorCount());
+        assertEquals(huge, c.getTitle());
+        assertNull(c.getAuthor());
+        assertEquals("BIG", c.getIsbn());
+        assertEquals("After", d.getTitle());
+        assertNull(d.getIsbn());
+    }
+
+    @Test
+    void rowsKeepTheirValuesAcrossManyChunks() {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        List<Media> rows = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            rows.add(catalog.add(new Book("Title " + i, "Author " + (i % 7), "ISBN-" + i, i % 5 + 1)));
+        }
+        rows.get(4_097).borrowOne();
+
+        assertEquals(10_000, catalog.size());
+        assertEquals(7, catalog.authorCount());
+        assertEquals("Title 9999", rows.get(9_999).getTitle());
+        assertEquals("ISBN-4097", rows.get(4_097).getIsbn());
+        assertEquals(rows.get(4_097).getTotalCopies() - 1, rows.get(4_097).getAvailableCopies());
+        assertEquals(rows.get(4_096).getTotalCopies(), rows.get(4_096).getAvailableCopies());
+    }
+
+    @Test
+    void concurrentBorrows_neverHandOutMoreCopiesThanTheRowHas() throws InterruptedException {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        Media row = catalog.add(new Book("Hot", "A", "HOT", 50));
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20; i++) {
+                    if (row.tryBorrowOne()) granted.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(50, granted.get());
+        assertEquals(0, row.getAvailableCopies());
+    }
+}
@@ -10,7 +10,13 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -247,4 +253,187 @@ public class FineServiceTest {
         service.storeBalanceOnLogin(null);
         verify(service, never()).save();
     }
+
+    @Test
+    void writeBehind_coalescesUntilDirtyLimit() throws IOException {
+        FineService service = new FineService(tempDir.resolve("wb.txt").toString());
+        service.enableWriteBehind(60_000, 3);
+
+        service.addFine("a", 10);
+        service.addFine("b", 20);
+        service.payFine("a", 5);
+        assertTrue(service.isDirty());
+        assertTrue(Files.readString(tempDir.resolve("wb.txt")).isBlank(), "Nothing written before the limit");
+
+        service.addFine("c", 30);
+        assertFalse(service.isDirty());
+        FineService reloaded = new FineService(tempDir.resolve("wb.txt").toString());
+        assertEquals(5, reloaded.getBalance("a"));
+        assertEquals(30, reloaded.getBalance("c"));
+        service.close();
+    }
+
+    @Test
+    void writeBehind_flushesAfterWindowAndOnClose() throws Exception {
+        Path file = tempDir.resolve("wb2.txt");
+        FineService service = new FineService(file.toString());
+        service.enableWriteBehind(20, 100);
+
+        service.addFine("late", 15);
+        for (int i = 0; i < 100 && service.isDirty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(15, new FineService(file.toString()).getBalance("late"));
+
+        service.enableWriteBehind(60_000, 100);
+        service.addFine("late", 5);
+        service.close();
+        assertEquals(20, new FineService(file.toString()).getBalance("late"));
+        assertFalse(Files.exists(tempDir.resolve("wb2.txt.tmp")), "Temp file is renamed into place");
+    }
+
+    @Test
+    void writeBehind_loginWithUnchangedBalanceDoesNotWrite() {
+        FineService service = spy(new FineService(tempDir.resolve("wb3.txt").toString()));
+        service.enableWriteBehind(60_000, 10);
+        service.addFine("user1", 40);
+        service.flush();
+        clearInvocations(service);
+
+        service.storeBalanceOnLogin("user1");
+        service.flush();
+
+        verify(service, never()).save();
+        service.close();
+    }
+
+    @Test
+    void loginWithUnchangedBalance_doesNotRewriteTheFile() throws IOException {
+        Path file = tempDir.resolve("login.txt");
+        Files.writeString(file, "user1,40\n");
+        FineService service = spy(new FineService(file.toString()));
+
+        service.storeBalanceOnLogin("user1");
+
+        verify(service, never()).save();
+        assertEquals(40, service.getBalance("user1"));
+    }
+
+    @Test
+    void getAllBalances_andFileRows_keepTheSameStableOrder() throws IOException {
+        Path file = tempDir.resolve("order.txt");
+        FineService service = new FineService(file.toString());
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            service.addFine("member" + i, i + 1);
+            expected.put("member" + i, i + 1);
+        }
+
+        List<String> order = List.copyOf(service.getAllBalances().keySet());
+        assertEquals(List.copyOf(expected.keySet()), order);
+        assertEquals(order, Files.readAllLines(file).stream().map(l -> l.split(",")[0]).toList());
+    }
+
+    @Test
+    void concurrentFinesAndPayments_doNotLoseUpdates() throws Exception {
+        FineService service = new FineService(tempDir.resolve("concurrent.txt").toString());
+        service.enableWriteBehind(60_000, 1_000_000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        service.addFine("shared", 3);
+                        service.payFine("shared", 1);
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(8 * 1000 * 2, service.getBalance("shared"));
+        service.close();
+        assertEquals(16000, new FineService(tempDir.resolve("concurrent.txt").toString()).getBalance("shared"));
+    }
+
+    @Test
+    void concurrentSaves_shareTheTempFileSafely() throws Exception {
+        Path file = tempDir.resolve("saves.txt");
+        FineService service = new FineService(file.toString());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String user = "user" + t;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        service.addFine(user, 2);
+                        service.saveBalances();
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        FineService reloaded = new FineService(file.toString());
+        for (int t = 0; t < 8; t++) {
+            assertEquals(100, reloaded.getBalance("user" + t));
+        }
+        assertFalse(Files.exists(tempDir.resolve("saves.txt.tmp")));
+    }
+
+    @Test
+    void snapshotBalances_isReadOnlyAndReusedUntilNextChange() {
+        fineService.addFine("snap", 4);
+        Map<String, Integer> first = fineService.snapshotBalances();
+
+        assertSame(first, fineService.snapshotBalances());
+        assertThrows(UnsupportedOperationException.class, () -> first.put("snap", 1));
+
+        fineService.payFine("snap", 1);
+        Map<String, Integer> second = fineService.snapshotBalances();
+        assertEquals(4, first.get("snap"));
+        assertEquals(3, second.get("snap"));
+    }
+
+    @Test
+    void getAllBalances_readsSnapshotAndCopiesOnFirstWrite() {
+        fineService.addFine("a", 1);
+        fineService.addFine("b", 2);
+        Map<String, Integer> view = fineService.getAllBalances();
+
+        var it = view.entrySet().iterator();
+        it.next();
+        it.remove();
+        assertEquals(1, view.size());
+        assertEquals(2, fineService.getAllBalances().size());
+        assertEquals(1, fineService.getBalance("a"));
+
+        view.clear();
+        assertTrue(view.isEmpty());
+        assertEquals(2, fineService.snapshotBalances().size());
+    }
+
+    @Test
+    void getAllBalances_answersNullKeysLikeAHashMap() {
+        fineService.addFine("a", 1);
+        Map<String, Integer> view = fineService.getAllBalances();
+
+        assertNull(view.get(null));
+        assertFalse(view.containsKey(null));
+        assertEquals(0, view.getOrDefault(null, 0));
+        assertNull(view.remove(null));
+
+        view.put(null, 7);
+        assertEquals(7, view.get(null));
+        assertTrue(view.containsKey(null));
+        assertFalse(fineService.getAllBalances().containsKey(null));
+    }
 }
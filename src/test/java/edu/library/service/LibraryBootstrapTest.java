@@ -0,0 +1,100 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.time.TimeProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LibraryBootstrapTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LibraryBootstrap bootstrap(String fines) throws Exception {
+        Path media = tempDir.resolve("media.txt");
+        Path records = tempDir.resolve("borrow_records.txt");
+        Path finesFile = tempDir.resolve("fines.txt");
+        Path users = tempDir.resolve("users.txt");
+        Files.writeString(media, "BOOK;Sample;Author;ISBN-1;1;0;2024-01-01\nCD;Album;Band;CD-1;2;2;null\n");
+        Files.writeString(records, "bob,ISBN-1,2024-01-01,false,null\n");
+        Files.writeString(finesFile, fines);
+        Files.writeString(users, "bob,pw,MEMBER,bob@example.com\n");
+
+        TimeProvider time = mock(TimeProvider.class);
+        when(time.today()).thenReturn(LocalDate.of(2024, 1, 3));
+        return new LibraryBootstrap(media.toString(), records.toString(), finesFile.toString(),
+                users.toString(), time, new FineCalculator());
+    }
+
+    @Test
+    void start_loadsAllStoresAndUpdatesFinesAfterMediaAndRecords() throws Exception {
+        LibraryBootstrap bootstrap = bootstrap("bob,5\n");
+
+        // قبل start ما في ولا ملف انقرأ
+        assertTrue(bootstrap.getMediaService().getAllMedia().isEmpty());
+        assertEquals(0, bootstrap.getFineService().getBalance("bob"));
+
+        assertSame(bootstrap, bootstrap.start());
+
+        assertEquals(2, bootstrap.getMediaService().getAllMedia().size());
+        assertEquals(1, bootstrap.getBorrowRecordService().getRecords().size());
+        assertTrue(bootstrap.getAuthService().userExists("bob"));
+        // يومين تأخير × 10 للكتاب، والرصيد القديم 5 بينكمل لـ20
+        assertEquals(20, bootstrap.getFineService().getBalance("bob"));
+    }
+
+    @Test
+    void start_reportsTimingPerStore() throws Exception {
+        LibraryBootstrap bootstrap = bootstrap("").start();
+
+        Map<String, Duration> timings = bootstrap.getTimings();
+        assertEquals(Set.of(LibraryBootstrap.FINES, LibraryBootstrap.RECORDS, LibraryBootstrap.USERS,
+                LibraryBootstrap.MEDIA, LibraryBootstrap.FINES_UPDATE), timings.keySet());
+        assertFalse(bootstrap.getTotal().isNegative());
+        assertTrue(bootstrap.timingReport().startsWith("Startup: "));
+        assertTrue(bootstrap.timingReport().contains("media "));
+
+        // start مرة ثانية ما بيعيد التحميل
+        assertSame(bootstrap, bootstrap.start());
+        assertEquals(timings, bootstrap.getTimings());
+    }
+
+    @Test
+    void main_printsTheTimingReport() throws Exception {
+        bootstrap("");
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            LibraryBootstrap.main(new String[] {
+                    tempDir.resolve("media.txt").toString(),
+                    tempDir.resolve("borrow_records.txt").toString(),
+                    tempDir.resolve("fines.txt").toString(),
+                    tempDir.resolve("users.txt").toString()});
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertTrue(out.toString().startsWith("Startup: "));
+        assertTrue(out.toString().contains("records "));
+    }
+
+    @Test
+    void start_rethrowsLoadFailures() throws Exception {
+        LibraryBootstrap bootstrap = bootstrap("bob,notanumber\n");
+
+        assertThrows(NumberFormatException.class, bootstrap::start);
+    }
+}
@@ -0,0 +1,134 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Media;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibrarySnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void writeTextFiles() throws Exception {
+        Files.writeString(tempDir.resolve("media.txt"),
+                "BOOK;Sample;Author;ISBN-1;2;1;2030-01-01\nCD;Album;Band;CD-1;2;2;null\n");
+        Files.writeString(tempDir.resolve("borrow_records.txt"),
+                "bob,ISBN-1,2030-01-01,false,null\nbob,CD-1,2024-01-01,true,2024-01-02\n");
+        Files.writeString(tempDir.resolve("fines.txt"), "bob,5\n");
+        Files.writeString(tempDir.resolve("users.txt"), "bob,pw,MEMBER,bob@example.com\n");
+    }
+
+    // قبل ما يصير الإرجاع تبع 2024-01-02 قديم كفاية ينأرشف
+    private LibraryBootstrap bootstrap() {
+        return new LibraryBootstrap(
+                tempDir.resolve("media.txt").toString(),
+                tempDir.resolve("borrow_records.txt").toString(),
+                tempDir.resolve("fines.txt").toString(),
+                tempDir.resolve("users.txt").toString(),
+                () -> LocalDate.of(2024, 1, 10),
+                new FineCalculator())
+                .enableSnapshots(tempDir.resolve("library.snapshot").toString(), 0);
+    }
+
+    @Test
+    void restart_restoresEveryStoreFromSnapshot() throws Exception {
+        writeTextFiles();
+        LibraryBootstrap first = bootstrap().start();
+        assertFalse(first.isRestoredFromSnapshot(), "No snapshot yet, text files are parsed");
+        first.close();
+        assertTrue(Files.exists(tempDir.resolve("library.snapshot")));
+
+        LibraryBootstrap second = bootstrap().start();
+        assertTrue(second.isRestoredFromSnapshot());
+        assertTrue(second.getTimings().containsKey(LibraryBootstrap.SNAPSHOT));
+
+        Media book = second.getMediaService().findByIsbn("ISBN-1");
+        assertEquals("Sample", book.getTitle());
+        assertEquals(1, book.getAvailableCopies());
+        assertEquals(2, book.getTotalCopies());
+        assertEquals(LocalDate.of(2030, 1, 1), book.getDueDate());
+        assertEquals(2, second.getMediaService().searchMedia("album").size()
+                + second.getMediaService().searchMedia("sample").size());
+
+        assertEquals(2, second.getBorrowRecordService().getRecords().size());
+        assertNotNull(second.getBorrowRecordService().findActiveBorrowRecord("bob", "ISBN-1"));
+        assertNull(second.getBorrowRecordService().findActiveBorrowRecord("bob", "CD-1"));
+        assertEquals("bob@example.com", second.getAuthService().getUsers().get(0).getEmail());
+        assertEquals(5, second.getFineService().getBalance("bob"));
+        second.close();
+    }
+
+    @Test
+    void restoredCatalog_dropsReplayedJournalOnNextSave() throws Exception {
+        writeTextFiles();
+        Path segment = tempDir.resolve("media.txt.journal.1");
+        Files.writeString(segment, "BORROW;CD-1;1;2030-03-01\n");
+        bootstrap().start().close();
+        assertTrue(Files.exists(segment));
+
+        LibraryBootstrap second = bootstrap().start();
+        assertTrue(second.isRestoredFromSnapshot());
+        Media cd = second.getMediaService().findByIsbn("CD-1");
+        assertEquals(1, cd.getAvailableCopies());
+        cd.setAvailableCopies(2);
+        cd.setDueDate(null);
+        second.getMediaService().saveAllMediaToFile();
+        assertFalse(Files.exists(segment), "media.txt now holds the journal's effect");
+
+        Files.delete(tempDir.resolve("library.snapshot"));
+        LibraryBootstrap fromText = bootstrap().start();
+        assertFalse(fromText.isRestoredFromSnapshot());
+        assertEquals(2, fromText.getMediaService().findByIsbn("CD-1").getAvailableCopies());
+    }
+
+    @Test
+    void changedTextFile_makesSnapshotStale() throws Exception {
+        writeTextFiles();
+        bootstrap().start().close();
+
+        Path fines = tempDir.resolve("fines.txt");
+        Files.writeString(fines, "bob,7\n");
+        Files.setLastModifiedTime(fines, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+        LibraryBootstrap restarted = bootstrap().start();
+        assertFalse(restarted.isRestoredFromSnapshot());
+        assertEquals(7, restarted.getFineService().getBalance("bob"));
+    }
+
+    @Test
+    void corruptSnapshot_fallsBackToTextFiles() throws Exception {
+        writeTextFiles();
+        bootstrap().start().close();
+
+        Path snapshot = tempDir.resolve("library.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(snapshot, bytes);
+
+        LibraryBootstrap restarted = bootstrap().start();
+        assertFalse(restarted.isRestoredFromSnapshot());
+        assertEquals(2, restarted.getMediaService().getAllMedia().size());
+    }
+
+    @Test
+    void writeSnapshot_beforeStartOrWhenDisabled_doesNothing() throws Exception {
+        writeTextFiles();
+        assertFalse(bootstrap().writeSnapshot());
+
+        LibraryBootstrap plain = new LibraryBootstrap(
+                tempDir.resolve("media.txt").toString(),
+                tempDir.resolve("borrow_records.txt").toString(),
+                tempDir.resolve("fines.txt").toString(),
+                tempDir.resolve("users.txt").toString()).start();
+        assertFalse(plain.writeSnapshot());
+        assertFalse(Files.exists(tempDir.resolve("library.snapshot")));
+    }
+}
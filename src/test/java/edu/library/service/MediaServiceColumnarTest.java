@@ -0,0 +1,148 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import edu.library.domain.time.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaServiceColumnarTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path mediaFile;
+    private BorrowRecordService borrowRecordService;
+    private FineService fineService;
+    private final TimeProvider timeProvider = () -> LocalDate.of(2025, 12, 1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mediaFile = tempDir.resolve("media.txt");
+        Files.write(mediaFile, List.of(
+                "BOOK;Clean Code;Robert Martin;B-1;2;2;null",
+                "CD;Abbey Road;The Beatles;C-1;1;0;2025-12-05",
+                "BOOK;Clean Architecture;Robert Martin;B-2;1;1;null"
+        ));
+        borrowRecordService = new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString());
+        fineService = new FineService(tempDir.resolve("fines.txt").toString());
+    }
+
+    private MediaService open(boolean columnar) {
+        MediaService service = new MediaService(mediaFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator(), false);
+        if (columnar) service.enableColumnarCatalog();
+        service.load();
+        return service;
+    }
+
+    @Test
+    void load_servesTheSameCatalogFromColumns() {
+        MediaService plain = open(false);
+        MediaService columnar = open(true);
+
+        assertTrue(columnar.isColumnarCatalog());
+        assertFalse(plain.isColumnarCatalog());
+        assertEquals(lines(plain.getAllMedia()), lines(columnar.getAllMedia()));
+        assertInstanceOf(Book.class, columnar.findBookByIsbn("b-1"));
+        assertInstanceOf(CD.class, columnar.findCDByIsbn("C-1"));
+        assertSame(columnar.findByIsbn("B-1"), columnar.getBooks().get(0));
+        assertEquals(List.of("B-2", "B-1"), isbns(columnar.findByTitlePrefix("clean", 0, 10)));
+        assertEquals(List.of("B-1", "B-2"), isbns(columnar.findByAuthor("robert martin", 0, 10)));
+        assertEquals(List.of("C-1"), isbns(columnar.searchMedia("abbey")));
+        assertEquals(2, columnar.getAvailableCount());
+    }
+
+    @Test
+    void borrowReturnAndSave_writeTheColumnsBackToTheFile() throws IOException {
+        MediaService service = open(true);
+        Media book = service.findByIsbn("B-2");
+
+        assertTrue(service.borrow(book, "alice"));
+        assertEquals(0, service.findByIsbn("B-2").getAvailableCopies());
+        assertEquals(LocalDate.of(2025, 12, 29), book.getDueDate());
+        assertEquals(List.of("B-1"), isbns(service.searchAvailable(null, Book.class, 0, 10)));
+        assertTrue(Files.readString(mediaFile).contains("BOOK;Clean Architecture;Robert Martin;B-2;1;0;2025-12-29"));
+
+        assertTrue(service.returnMedia(book, "alice"));
+        assertNull(book.getDueDate());
+        assertEquals(List.of("B-2", "B-1"), isbns(service.searchAvailable(null, Book.class, 0, 10)));
+
+        MediaService reloaded = open(false);
+        assertEquals(lines(service.getAllMedia()), lines(reloaded.getAllMedia()));
+    }
+
+    @Test
+    void addMediaImportAndDelete_goThroughTheColumns() {
+        MediaService service = open(true);
+        CD added = new CD("Blue Train", "John Coltrane", "C-2", 2);
+        service.addMedia(added);
+        service.addBook("Refactoring", "Martin Fowler", "B-3", 3);
+
+        Media stored = service.findByIsbn("C-2");
+        assertNotSame(added, stored, "The catalog keeps its own row");
+        assertEquals("Blue Train", stored.getTitle());
+        assertEquals(3, service.findByIsbn("B-3").getTotalCopies());
+
+        MediaImportReport report = service.importMedia(List.of(new Book("Refactoring", "Martin Fowler", "B-3", 2)).iterator(), null);
+        assertEquals(1, report.merged());
+        assertSame(stored, service.findByIsbn("C-2"));
+        assertEquals(5, service.findByIsbn("B-3").getTotalCopies());
+
+        assertTrue(service.deleteMedia("C-2"));
+        assertNull(service.findByIsbn("C-2"));
+        assertTrue(service.searchMedia("blue train").isEmpty());
+        assertEquals(4, open(false).getAllMedia().size());
+    }
+
+    @Test
+    void enableAfterLoad_movesTheLoadedItemsIntoColumns() {
+        MediaService service = new MediaService(mediaFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator());
+        Media before = service.findByIsbn("B-1");
+        List<String> expected = lines(service.getAllMedia());
+
+        service.enableColumnarCatalog();
+
+        Media after = service.findByIsbn("B-1");
+        assertNotSame(before, after);
+        assertEquals(expected, lines(service.getAllMedia()));
+        assertTrue(service.borrow(after, "bob"));
+        assertEquals(1, after.getAvailableCopies());
+        assertEquals(2, before.getAvailableCopies(), "Old references are no longer part of the catalog");
+        assertEquals(2, service.getAvailableCount());
+    }
+
+    @Test
+    void journalReplay_rebuildsRowsInColumnarMode() {
+        MediaService service = open(true);
+        service.enableJournal(100);
+        service.addBook("Journal Book", "Writer", "J-1", 2);
+        assertTrue(service.borrow(service.findByIsbn("J-1"), "carol"));
+        assertTrue(service.updateMediaQuantity("B-1", 4));
+
+        MediaService reloaded = open(true);
+        assertEquals(lines(service.getAllMedia()), lines(reloaded.getAllMedia()));
+        assertEquals(1, reloaded.findByIsbn("J-1").getAvailableCopies());
+        assertEquals(4, reloaded.findByIsbn("B-1").getTotalCopies());
+    }
+
+    private static List<String> lines(List<Media> media) {
+        return media.stream().map(MediaService::formatMediaLine).toList();
+    }
+
+    private static List<String> isbns(List<? extends Media> media) {
+        return media.stream().map(Media::getIsbn).toList();
+    }
+}
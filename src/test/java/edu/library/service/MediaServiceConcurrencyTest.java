@@ -0,0 +1,156 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Book;
+import edu.library.domain.time.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaServiceConcurrencyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path mediaFile;
+    private BorrowRecordService borrowRecordService;
+    private final TimeProvider timeProvider = () -> LocalDate.of(2025, 12, 1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mediaFile = tempDir.resolve("media.txt");
+        Files.writeString(mediaFile, "BOOK;Hot Book;Author;HOT;3;3;null\nCD;Other;Artist;CD1;2;2;null\n");
+        borrowRecordService = new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString());
+    }
+
+    private MediaService open() {
+        return new MediaService(mediaFile.toString(), borrowRecordService,
+                new FineService(tempDir.resolve("fines.txt").toString()), timeProvider, new FineCalculator());
+    }
+
+    private int borrowFromManyDesks(MediaService service, String isbn, int desks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(desks);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < desks; i++) {
+                String user = "member" + i;
+                tasks.add(() -> service.borrow(service.findByIsbn(isbn), user));
+            }
+            int granted = 0;
+            for (Future<Boolean> f : pool.invokeAll(tasks)) {
+                if (f.get()) granted++;
+            }
+            return granted;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentBorrows_neverExceedAvailableCopies() throws Exception {
+        MediaService service = open();
+        service.enableConcurrentMode();
+
+        assertEquals(3, borrowFromManyDesks(service, "HOT", 16));
+        service.flushPendingWrites();
+
+        assertEquals(0, service.findByIsbn("HOT").getAvailableCopies());
+        assertEquals(3, borrowRecordService.getRecords().size());
+        assertTrue(Files.readAllLines(mediaFile).contains("BOOK;Hot Book;Author;HOT;3;0;2025-12-29"));
+    }
+
+    @Test
+    void concurrentMode_withJournal_replaysToFinalCounts() throws Exception {
+        MediaService service = open();
+        service.enableJournal(1000);
+        service.enableConcurrentMode();
+
+        assertEquals(2, borrowFromManyDesks(service, "CD1", 8));
+        service.addBook("Added", "Writer", "NEW", 1);
+        service.disableConcurrentMode();
+        assertFalse(service.isConcurrentMode());
+
+        MediaService reloaded = open();
+        assertEquals(0, reloaded.findByIsbn("CD1").getAvailableCopies());
+        assertTrue(reloaded.findByIsbn("NEW") instanceof Book);
+    }
+
+    @Test
+    void concurrentReturnsOfOneLoan_returnOnlyOnce() throws Exception {
+        MediaService service = open();
+        service.enableConcurrentMode();
+        Book book = (Book) service.findByIsbn("HOT");
+        assertTrue(service.borrow(book, "amal"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> desks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) desks.add(() -> service.returnMedia(book, "amal"));
+            int returned = 0;
+            for (Future<Boolean> f : pool.invokeAll(desks)) {
+                if (f.get()) returned++;
+            }
+            assertEquals(1, returned);
+        } finally {
+            pool.shutdown();
+        }
+        service.flushPendingWrites();
+
+        assertEquals(3, book.getAvailableCopies());
+        assertNull(borrowRecordService.findActiveBorrowRecord("amal", "HOT"));
+    }
+
+    @Test
+    void concurrentReturnAll_andReturnMedia_closeEachLoanOnce() throws Exception {
+        MediaService service = open();
+        service.enableConcurrentMode();
+        Book book = (Book) service.findByIsbn("HOT");
+        assertTrue(service.borrow(book, "other1"));
+        assertTrue(service.borrow(book, "other2"));
+        assertTrue(service.borrowAll("amal", List.of("HOT", "CD1")));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        int all = 0;
+        int single = 0;
+        try {
+            List<Callable<Boolean>> batches = new ArrayList<>();
+            List<Callable<Boolean>> singles = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                batches.add(() -> service.returnAll("amal", List.of("HOT", "CD1")));
+                singles.add(() -> service.returnMedia(book, "amal"));
+            }
+            List<Callable<Boolean>> desks = new ArrayList<>(batches);
+            desks.addAll(singles);
+            List<Future<Boolean>> results = pool.invokeAll(desks);
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).get()) continue;
+                if (i < batches.size()) all++;
+                else single++;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        service.flushPendingWrites();
+
+        assertEquals(1, all + single, "HOT is returned by exactly one desk");
+        assertEquals(1, book.getAvailableCopies());
+        assertEquals(all == 1 ? 2 : 1, service.findByIsbn("CD1").getAvailableCopies());
+        long closed = Files.readAllLines(tempDir.resolve("borrow_records.txt.returns")).stream()
+                .filter(line -> line.startsWith("amal,"))
+                .count();
+        assertEquals(all == 1 ? 2 : 1, closed);
+    }
+}
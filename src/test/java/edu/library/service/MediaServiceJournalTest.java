@@ -0,0 +1,158 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Book;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import edu.library.domain.time.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaServiceJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path mediaFile;
+    private BorrowRecordService borrowRecordService;
+    private FineService fineService;
+    private final TimeProvider timeProvider = () -> LocalDate.of(2025, 12, 1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mediaFile = tempDir.resolve("media.txt");
+        Files.writeString(mediaFile, "BOOK;Seed Book;Author;SEED;2;2;null\n");
+        borrowRecordService = new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString());
+        fineService = new FineService(tempDir.resolve("fines.txt").toString());
+    }
+
+    private MediaService open() {
+        return new MediaService(mediaFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator());
+    }
+
+    @Test
+    void journalMode_appendsInsteadOfRewritingSnapshot() throws IOException {
+        MediaService service = open();
+        service.enableJournal(100);
+        String snapshotBefore = Files.readString(mediaFile);
+
+        service.addMedia(new CD("Journal CD", "Artist", "JCD", 1, 1));
+        assertTrue(service.borrow(service.findByIsbn("SEED"), "alice"));
+
+        assertEquals(snapshotBefore, Files.readString(mediaFile), "Snapshot must not be rewritten per mutation");
+        assertTrue(Files.exists(tempDir.resolve("media.txt.journal.1")));
+        assertEquals(2, Files.readAllLines(tempDir.resolve("media.txt.journal.1")).size());
+    }
+
+    @Test
+    void replayOnStartup_rebuildsSameItems() {
+        MediaService service = open();
+        service.enableJournal(100);
+
+        service.addMedia(new CD("Journal CD", "Artist", "JCD", 3, 3));
+        service.addBook("Second Book", "Writer", "B2", 4);
+        assertTrue(service.borrow(service.findByIsbn("SEED"), "alice"));
+        assertTrue(service.updateMediaQuantity("JCD", 2));
+        assertTrue(service.deleteMedia("B2"));
+        assertTrue(service.returnMedia(service.findByIsbn("SEED"), "alice"));
+        assertTrue(service.borrow(service.findByIsbn("JCD"), "bob"));
+
+        MediaService reloaded = open();
+
+        assertEquals(describe(service.getItems()), describe(reloaded.getItems()));
+        assertNull(reloaded.findByIsbn("B2"));
+        assertEquals(1, reloaded.findCDByIsbn("JCD").getAvailableCopies());
+        assertEquals(LocalDate.of(2025, 12, 8), reloaded.findCDByIsbn("JCD").getDueDate());
+    }
+
+    @Test
+    void compaction_writesSnapshotAndDropsSealedSegments() throws IOException {
+        MediaService service = open();
+        service.enableJournal(2);
+
+        service.addBook("Book A", "Writer", "A1", 1);
+        service.addBook("Book B", "Writer", "B1", 1);
+        service.compactJournal();
+
+        List<String> snapshot = Files.readAllLines(mediaFile);
+        assertEquals(3, snapshot.size());
+        assertTrue(snapshot.contains("BOOK;Book B;Writer;B1;1;1;null"));
+        assertEquals(0, MediaJournal.readPending(mediaFile.toString()).size());
+
+        service.addBook("Book C", "Writer", "C1", 1);
+        service.closeJournal();
+        assertFalse(service.isJournalEnabled());
+        assertEquals(4, Files.readAllLines(mediaFile).size());
+        assertEquals(4, open().getItems().size());
+    }
+
+    @Test
+    void fullRewrite_discardsReplayedJournal() {
+        MediaService service = open();
+        service.enableJournal(100);
+        assertTrue(service.borrow(service.findByIsbn("SEED"), "alice"));
+
+        MediaService plain = open();
+        assertFalse(plain.isJournalEnabled());
+        assertEquals(1, plain.findByIsbn("SEED").getAvailableCopies());
+
+        plain.updateMediaQuantity("SEED", 5);
+        assertTrue(MediaJournal.readPending(mediaFile.toString()).isEmpty());
+        assertEquals(5, open().findByIsbn("SEED").getTotalCopies());
+        assertEquals(1, open().findByIsbn("SEED").getAvailableCopies());
+    }
+
+    @Test
+    void replay_keepsDuplicateIsbnAddsAsSeparateItems() throws IOException {
+        MediaService service = open();
+        service.enableJournal(100);
+        service.addMedia(new Book("First Copy", "Writer", "DUP", 1, 1));
+        service.addMedia(new Book("Second Copy", "Writer", "DUP", 2, 2));
+
+        MediaService reloaded = open();
+        assertEquals(describe(service.getItems()), describe(reloaded.getItems()));
+
+        // الـsnapshot من الذاكرة الأصلية لازم يطابق اللي انبنى من الـjournal
+        service.compactJournal();
+        List<String> saved = Files.readAllLines(mediaFile);
+        assertEquals(3, saved.size());
+        assertEquals(saved, reloaded.getItems().stream().map(MediaService::formatMediaLine).toList());
+    }
+
+    @Test
+    void compactionCutShort_sealedSegmentsAreNotReplayedTwice() throws IOException {
+        MediaService service = open();
+        service.enableJournal(100);
+        service.addBook("Book A", "Writer", "A1", 1);
+        service.compactJournal();
+        List<String> snapshot = Files.readAllLines(mediaFile);
+
+        // الـsnapshot الجديد انكتب بس الـsegment المختوم ما انحذف
+        Files.write(tempDir.resolve("media.txt.journal.1"), List.of("ADD;BOOK;Book A;Writer;A1;1;1;null"));
+        Files.writeString(tempDir.resolve("media.txt.journal-compacted"), "1");
+
+        MediaService reloaded = open();
+        assertEquals(snapshot, reloaded.getItems().stream().map(MediaService::formatMediaLine).toList());
+
+        reloaded.enableJournal(100);
+        reloaded.addBook("Book B", "Writer", "B1", 1);
+        assertTrue(Files.exists(tempDir.resolve("media.txt.journal.2")));
+        assertEquals(3, open().getItems().size());
+    }
+
+    private static List<String> describe(List<Media> items) {
+        return items.stream()
+                .map(m -> (m instanceof Book ? "BOOK" : "CD") + "|" + m + "|" + m.getDueDate())
+                .toList();
+    }
+}
@@ -8,10 +8,13 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import edu.library.domain.model.Media;
 import java.util.Map;
 
 import edu.library.domain.model.Book;
@@ -588,4 +591,451 @@ class MediaServiceTest {
 
 
 
+    @Test
+    void findByIsbn_isCaseInsensitiveAndTyped() {
+        Book book = new Book("Indexed Book", "Author", "ABC-1", 1, 1);
+        CD cd = new CD("Indexed CD", "Artist", "xyz-2", 1, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+
+        assertSame(book, mediaService.findByIsbn("abc-1"));
+        assertSame(cd, mediaService.findByIsbn("XYZ-2"));
+        assertSame(book, mediaService.findBookByIsbn("Abc-1"));
+        assertNull(mediaService.findBookByIsbn("xyz-2"), "A CD must not be returned as a book");
+        assertSame(cd, mediaService.findCDByIsbn("xyz-2"));
+        assertNull(mediaService.findCDByIsbn("abc-1"), "A book must not be returned as a CD");
+        assertNull(mediaService.findByIsbn(null));
+    }
+
+    @Test
+    void deleteMedia_keepsIndexInStepWithItems() {
+        Book first = new Book("First", "Author", "DUP", 1, 1);
+        Book second = new Book("Second", "Author", "DUP", 1, 1);
+        mediaService.addMedia(first);
+        mediaService.addMedia(second);
+
+        assertSame(first, mediaService.findByIsbn("dup"));
+        assertTrue(mediaService.deleteMedia("DUP"));
+        assertSame(second, mediaService.findBookByIsbn("DUP"), "Remaining duplicate should still be found");
+        assertTrue(mediaService.deleteMedia("DUP"));
+        assertFalse(mediaService.isMediaActive("DUP"));
+    }
+
+    @Test
+    void loadMediaFromFile_buildsIsbnIndex() throws IOException {
+        Path file = tempDir.resolve("indexed_media.txt");
+        Files.writeString(file,
+                "BOOK;Loaded Book;Author;LB-1;2;2;null\n" +
+                        "CD;Loaded CD;Artist;LC-1;1;1;null\n");
+
+        MediaService service = new MediaService(file.toString(), borrowRecordService, fineService);
+
+        assertEquals("Loaded Book", service.findBookByIsbn("lb-1").getTitle());
+        assertEquals("Loaded CD", service.findCDByIsbn("lc-1").getTitle());
+        assertTrue(service.isMediaActive("LC-1"));
+    }
+
+    @Test
+    void searchMedia_indexMatchesSubstringsAcrossFields() {
+        Book book = new Book("The Hobbit", "Tolkien", "HB-100", 1, 1);
+        CD cd = new CD("Hobbit Soundtrack", "Shore", "CD-200", 1, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+
+        assertEquals(List.of(book, cd), mediaService.searchMedia("HOBB"));
+        assertEquals(List.of(book), mediaService.searchMedia("kien"));
+        assertEquals(List.of(cd), mediaService.searchMedia("cd-2"));
+        assertEquals(List.of(book, cd), mediaService.searchMedia("o"), "Short keywords still match");
+        assertTrue(mediaService.searchMedia("hobbitx").isEmpty());
+        assertEquals(List.of(book), mediaService.searchBook("hobbit"));
+        assertEquals(List.of(cd), mediaService.searchCD("hobbit"));
+    }
+
+    @Test
+    void searchMedia_rankedWithOffsetAndLimit() {
+        Book byAuthor = new Book("Collected Essays", "Dune Society", "R-1", 1, 1);
+        Book inTitle = new Book("Return to Dune", "Author", "R-2", 1, 1);
+        Book prefix = new Book("Dune", "Herbert", "R-3", 1, 1);
+        mediaService.addMedia(byAuthor);
+        mediaService.addMedia(inTitle);
+        mediaService.addMedia(prefix);
+
+        assertEquals(List.of(prefix, inTitle, byAuthor), mediaService.searchMedia("dune", true, 0, 10));
+        assertEquals(List.of(inTitle), mediaService.searchMedia("dune", true, 1, 1));
+        assertEquals(List.of(inTitle, prefix), mediaService.searchMedia("dune", false, 1, 5));
+        assertTrue(mediaService.searchMedia("dune", false, 0, 0).isEmpty());
+    }
+
+    @Test
+    void searchMedia_deletedItemsAreNotReturned() {
+        mediaService.addBook("Gone Girl", "Flynn", "GG-1", 1);
+        assertEquals(1, mediaService.searchMedia("gone").size());
+
+        assertTrue(mediaService.deleteMedia("GG-1"));
+        assertTrue(mediaService.searchMedia("gone").isEmpty());
+        assertTrue(mediaService.searchBook("g").isEmpty());
+    }
+
+    @Test
+    void searchMedia_twoLetterKeywordsUseTheIndex() {
+        Book book = new Book("The Hobbit", "Tolkien", "HB-100", 1, 1);
+        CD cd = new CD("Hobbit Soundtrack", "Shore", "CD-200", 1, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+
+        assertEquals(List.of(book, cd), mediaService.searchMedia("HO"));
+        assertEquals(List.of(cd), mediaService.searchMedia("ck"));
+        assertEquals(List.of(book), mediaService.searchMedia("b-"));
+        assertTrue(mediaService.searchMedia("zq").isEmpty());
+    }
+
+    @Test
+    void searchIndex_compactsDeletedSlotsAndKeepsCatalogOrder() {
+        MediaSearchIndex index = new MediaSearchIndex();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Book b = new Book("Title " + i, "Author", "C-" + i, 1, 1);
+            books.add(b);
+            index.add(b);
+        }
+        for (int i = 0; i < 150; i++) {
+            index.remove(books.get(i));
+        }
+
+        assertEquals(50, index.size());
+        assertTrue(index.slots() < 200, "Dead slots are dropped once most of the index is empty");
+        assertEquals(books.subList(150, 200), index.search("title", m -> true, false, 0, 100));
+        assertEquals(List.of(books.get(199)), index.search("c-199", m -> true, false, 0, 10));
+
+        Book late = new Book("Title late", "Author", "C-late", 1, 1);
+        index.add(late);
+        index.remove(books.get(160));
+        List<Media> hits = index.search("title", m -> true, false, 0, 100);
+        assertEquals(50, hits.size());
+        assertEquals(late, hits.get(hits.size() - 1));
+    }
+
+    @Test
+    void load_readsArabicIndicDigitsAndCountsMalformedLines() throws IOException {
+        Files.writeString(mediaFile, String.join("\r\n",
+                "BOOK;Children's book;Jane Austen;R100;\u0665;\u0664;null",
+                "CD;music;Jon;C100;\u0664;\u0663;2025-12-16",
+                "",
+                "BOOK;Too;Few;Fields",
+                "DVD;Film;Someone;D1;1;1;null",
+                "BOOK;Bad Count;Writer;B9;x;1;null",
+                "BOOK;Bad Date;Writer;B8;1;1;2025-13-40",
+                "  book;Lower Case;Writer;B7; 2 ; 2 ;NULL  "), StandardCharsets.UTF_8);
+
+        MediaService loaded = new MediaService(mediaFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator());
+
+        assertEquals(3, loaded.getItems().size());
+        assertEquals(5, loaded.findByIsbn("R100").getTotalCopies());
+        assertEquals(4, loaded.findByIsbn("R100").getAvailableCopies());
+        assertEquals(LocalDate.of(2025, 12, 16), loaded.findCDByIsbn("C100").getDueDate());
+        assertEquals("Lower Case", loaded.findBookByIsbn("B7").getTitle());
+
+        MediaLoadStats stats = loaded.getLastLoadStats();
+        assertEquals(8, stats.lines());
+        assertEquals(3, stats.loaded());
+        assertEquals(1, stats.blank());
+        assertEquals(1, stats.wrongFieldCount());
+        assertEquals(1, stats.unknownType());
+        assertEquals(1, stats.badNumber());
+        assertEquals(1, stats.badDate());
+        assertEquals(4, stats.malformed());
+    }
+
+    @Test
+    void snapshotMedia_isReusedUntilCatalogChanges() {
+        mediaService.addMedia(new Book("One", "A", "S-1", 1));
+        List<Media> first = mediaService.snapshotMedia();
+        assertSame(first, mediaService.snapshotMedia());
+
+        List<Media> copy = mediaService.getAllMedia();
+        copy.remove(0);
+        assertTrue(copy.isEmpty());
+        assertEquals(1, mediaService.getAllMedia().size());
+
+        mediaService.addMedia(new CD("Two", "B", "S-2", 1));
+        assertNotSame(first, mediaService.snapshotMedia());
+        assertEquals(2, mediaService.streamMedia().count());
+        assertEquals(1, first.size());
+    }
+
+    @Test
+    void borrowAll_borrowsEveryItemWithOneWritePerFile() throws IOException {
+        Book book = new Book("Book1", "Author1", "B-1", 2, 2);
+        CD cd = new CD("CD1", "Artist1", "C-1", 1, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+
+        assertTrue(mediaService.borrowAll("bob", List.of("B-1", "C-1", "B-1")));
+
+        assertEquals(0, book.getAvailableCopies());
+        assertEquals(0, cd.getAvailableCopies());
+        assertEquals(3, borrowRecordService.getActiveBorrowRecordsForUser("bob").size());
+        assertEquals(3, Files.readAllLines(borrowFile).size());
+        assertEquals(LocalDate.now().plusDays(7), cd.getDueDate());
+    }
+
+    @Test
+    void borrowAll_unavailableItem_changesNothing() throws IOException {
+        Book book = new Book("Book1", "Author1", "B-1", 1, 1);
+        CD cd = new CD("CD1", "Artist1", "C-1", 0, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+
+        assertFalse(mediaService.borrowAll("bob", List.of("B-1", "C-1")));
+        assertFalse(mediaService.borrowAll("bob", List.of("B-1", "MISSING")));
+
+        assertEquals(1, book.getAvailableCopies());
+        assertTrue(borrowRecordService.getRecords().isEmpty());
+        assertTrue(Files.readAllLines(borrowFile).isEmpty());
+    }
+
+    @Test
+    void borrow_overdueCheckMatchesTheUsernameExactly() {
+        Book b = new Book("Book", "A", "B-1", 3, 3);
+        mediaService.addMedia(b);
+        borrowRecordService.recordBorrow("Amal", "OLD", LocalDate.now().minusDays(2));
+
+        assertFalse(mediaService.borrow(b, "Amal"), "Overdue loan blocks the same user");
+        assertTrue(mediaService.borrow(b, "amal"), "Like getActiveBorrowRecordsForUser, other casing is another user");
+        assertFalse(mediaService.borrowAll("Amal", List.of("B-1")));
+        assertTrue(mediaService.borrowAll("AMAL", List.of("B-1")));
+    }
+
+    @Test
+    void borrowAll_withUnpaidFines_isRefused() {
+        mediaService.addMedia(new Book("Book1", "Author1", "B-1", 1, 1));
+        fineService.addFine("bob", 5);
+
+        assertFalse(mediaService.borrowAll("bob", List.of("B-1")));
+        assertEquals(1, mediaService.findByIsbn("B-1").getAvailableCopies());
+    }
+
+    @Test
+    void returnAll_returnsEveryLoanAndChargesLateFeesOnce() {
+        Book book = new Book("Book1", "Author1", "B-1", 1, 1);
+        CD cd = new CD("CD1", "Artist1", "C-1", 1, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+        assertTrue(mediaService.borrowAll("bob", List.of("B-1", "C-1")));
+
+        // الكتاب متأخر 3 أيام (30) والـCD متأخر 24 يوم (480)، الرصيد بيصير أكبر وحدة
+        when(timeProvider.today()).thenReturn(LocalDate.now().plusDays(31));
+        assertTrue(mediaService.returnAll("bob", List.of("C-1", "B-1")));
+
+        assertEquals(1, book.getAvailableCopies());
+        assertEquals(1, cd.getAvailableCopies());
+        assertNull(book.getDueDate());
+        assertTrue(borrowRecordService.getActiveBorrowRecordsForUser("bob").isEmpty());
+        assertEquals(480, fineService.getBalance("bob"));
+    }
+
+    @Test
+    void returnAll_itemNotBorrowed_changesNothing() {
+        Book book = new Book("Book1", "Author1", "B-1", 2, 2);
+        mediaService.addMedia(book);
+        mediaService.addMedia(new CD("CD1", "Artist1", "C-1", 1, 1));
+        assertTrue(mediaService.borrowAll("bob", List.of("B-1")));
+
+        assertFalse(mediaService.returnAll("bob", List.of("B-1", "C-1")));
+        assertFalse(mediaService.returnAll("bob", List.of("B-1", "B-1")));
+
+        assertEquals(1, book.getAvailableCopies());
+        assertEquals(1, borrowRecordService.getActiveBorrowRecordsForUser("bob").size());
+    }
+
+    @Test
+    void importMedia_csvAddsMergesAndRejectsRowsWithOneWrite() throws IOException {
+        mediaService.addMedia(new Book("Existing", "A", "ISBN-1", 2, 2));
+        Path feed = tempDir.resolve("feed.csv");
+        Files.writeString(feed, String.join("\n",
+                "type,title,author,isbn,copies",
+                "BOOK,\"Title, with comma\",Author,ISBN-1,3",
+                "CD,Album,\"The \"\"Band\"\"\",CD-1,2",
+                "cd,Album,The Band,cd-1,1",
+                "",
+                "BOOK,No copies,A,B-2,0",
+                "DVD,Movie,A,D-1,1",
+                "BOOK,Semi;colon,A,B-3,1",
+                "CD,Clash,A,isbn-1,1",
+                "BOOK,Short,A") + "\n", StandardCharsets.UTF_8);
+
+        List<String> rejections = new ArrayList<>();
+        List<MediaImportReport> progress = new ArrayList<>();
+        MediaImportReport report = mediaService.importMedia(feed, new MediaImportListener() {
+            @Override
+            public void progress(MediaImportReport soFar) {
+                progress.add(soFar);
+            }
+
+            @Override
+            public void rejected(long row, String raw, String reason) {
+                rejections.add(row + ":" + reason);
+            }
+        });
+
+        assertEquals(new MediaImportReport(10, 1, 2, 5), report);
+        assertEquals(List.of(report), progress);
+        assertEquals(List.of("6:copies must be positive", "7:unknown type: DVD",
+                "8:field contains ';' or a line break", "9:ISBN already used by a book",
+                "10:expected 5 columns, found 3"), rejections);
+
+        Media book = mediaService.findByIsbn("ISBN-1");
+        assertEquals(5, book.getTotalCopies());
+        assertEquals(5, book.getAvailableCopies());
+        Media cd = mediaService.findByIsbn("CD-1");
+        assertEquals("The \"Band\"", cd.getAuthor());
+        assertEquals(3, cd.getTotalCopies());
+
+        MediaService reloaded = new MediaService(mediaFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator());
+        assertEquals(2, reloaded.getAllMedia().size());
+        assertEquals(3, reloaded.findByIsbn("CD-1").getAvailableCopies());
+    }
+
+    @Test
+    void importMedia_iteratorAndTsv() throws IOException {
+        MediaImportReport fromIterator = mediaService.importMedia(List.of(
+                new Book("One", "A", "T-1", 1),
+                new Book("One", "A", "T-1", 2),
+                new CD("", "B", "T-2", 1)).iterator(), null);
+        assertEquals(new MediaImportReport(3, 1, 1, 1), fromIterator);
+        assertEquals(3, mediaService.findByIsbn("T-1").getTotalCopies());
+
+        Path tsv = tempDir.resolve("feed.tsv");
+        Files.writeString(tsv, "BOOK\tTab, Title\tAuthor\tT-3\t4\n");
+        assertEquals(1, mediaService.importMedia(tsv, null).added());
+        assertEquals("Tab, Title", mediaService.findByIsbn("T-3").getTitle());
+
+        MediaImportReport missing = mediaService.importMedia(tempDir.resolve("missing.csv"), null);
+        assertEquals(0, missing.rows());
+    }
+
+    @Test
+    void listMedia_pagesWithStableCursorAndTypeFilter() {
+        mediaService.addMedia(new Book("Charlie", "Zed", "B-3", 1));
+        mediaService.addMedia(new Book("alpha", "Young", "B-1", 1));
+        mediaService.addMedia(new CD("Bravo", "Xavier", "C-1", 1));
+        mediaService.addMedia(new Book("Delta", "Walker", "B-4", 1));
+
+        MediaPage first = mediaService.listMedia(null, MediaPage.Sort.TITLE, null, 2);
+        assertEquals(List.of("alpha", "Bravo"), first.getItems().stream().map(Media::getTitle).toList());
+        assertTrue(first.hasNext());
+
+        // عنصر جديد قبل الـcursor ما بيحرّك الصفحة الجاية
+        mediaService.addMedia(new Book("Aardvark", "V", "B-0", 1));
+        MediaPage second = mediaService.listMedia(null, MediaPage.Sort.TITLE, first.getNextCursor(), 2);
+        assertEquals(List.of("Charlie", "Delta"), second.getItems().stream().map(Media::getTitle).toList());
+        assertFalse(second.hasNext());
+        assertTrue(second.format().startsWith("[Book] | Charlie | ISBN: B-3 | Available: 1/1 | Due: None"));
+
+        MediaPage books = mediaService.listMedia(Book.class, MediaPage.Sort.AUTHOR, null, 10);
+        assertEquals(List.of("V", "Walker", "Young", "Zed"), books.getItems().stream().map(Media::getAuthor).toList());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> mediaService.listMedia(null, MediaPage.Sort.ISBN, first.getNextCursor(), 2));
+        assertThrows(IllegalArgumentException.class, () -> mediaService.listMedia(null, null, null, 0));
+    }
+
+    @Test
+    void exportMedia_writesFeedThatImportsBack() throws IOException {
+        mediaService.addMedia(new Book("Title, with comma", "Author \"Q\"", "B-1", 2, 3));
+        mediaService.addMedia(new CD("Album", "Band", "C-1", 1, 1));
+
+        Path export = tempDir.resolve("export.csv");
+        assertEquals(2, mediaService.exportMedia(export, null, MediaPage.Sort.ISBN));
+        assertEquals("type,title,author,isbn,copies", Files.readAllLines(export).get(0));
+        assertEquals(1, mediaService.exportMedia(tempDir.resolve("cds.csv"), CD.class, null));
+
+        Path otherFile = tempDir.resolve("other_media.txt");
+        MediaService other = new MediaService(otherFile.toString(), borrowRecordService, fineService,
+                timeProvider, new FineCalculator());
+        assertEquals(new MediaImportReport(3, 2, 0, 0), other.importMedia(export, null));
+        assertEquals("Author \"Q\"", other.findByIsbn("B-1").getAuthor());
+        assertEquals("Title, with comma", other.findByIsbn("B-1").getTitle());
+        assertEquals(3, other.findByIsbn("B-1").getTotalCopies());
+
+        assertEquals(-1, mediaService.exportMedia(tempDir.resolve("no/such/dir/x.csv"), null, null));
+    }
+
+    @Test
+    void sortedIndexes_answerPrefixRangeAndAuthorQueries() {
+        mediaService.addMedia(new Book("Java Basics", "Smith", "B-2", 1));
+        mediaService.addMedia(new Book("java advanced", "Jones", "B-1", 1));
+        mediaService.addMedia(new CD("Jazz Hits", "smith", "C-1", 1));
+        mediaService.addMedia(new Book("Kotlin", "Smithson", "B-3", 1));
+        mediaService.addMedia(new Book("Java Basics", "Smith", "B-0", 1));
+
+        assertEquals(List.of("B-1", "B-0", "B-2"), isbns(mediaService.findByTitlePrefix("JAVA", 0, 10)));
+        assertEquals(List.of("B-0", "B-2"), isbns(mediaService.findByTitlePrefix("java", 1, 2)));
+        assertEquals(List.of("B-1", "B-0", "B-2", "C-1"), isbns(mediaService.findByTitleRange("j", "k", 0, 10)));
+        assertEquals(List.of("C-1", "B-3"), isbns(mediaService.findByTitleRange("jazz", null, 0, 10)));
+        assertTrue(mediaService.findByTitleRange("z", "a", 0, 10).isEmpty());
+
+        assertEquals(List.of("B-0", "B-2", "C-1"), isbns(mediaService.findByAuthor("SMITH", 0, 10)));
+        assertEquals(List.of("B-0", "B-2", "C-1", "B-3"), isbns(mediaService.findByAuthorPrefix("smi", 0, 10)));
+
+        mediaService.deleteMedia("B-2");
+        assertEquals(List.of("B-0", "C-1"), isbns(mediaService.findByAuthor("smith", 0, 10)));
+        assertEquals(List.of("B-1", "B-0", "C-1", "B-3"), isbns(mediaService.findByTitlePrefix("", 0, 10)));
+    }
+
+    private static List<String> isbns(List<Media> media) {
+        return media.stream().map(Media::getIsbn).toList();
+    }
+
+    @Test
+    void availabilityIndex_followsBorrowReturnAndQuantityChanges() {
+        Book book = new Book("Java Basics", "A", "B-1", 1, 1);
+        CD cd = new CD("Java Hits", "B", "C-1", 1, 1);
+        CD emptyCd = new CD("Java Live", "C", "C-2", 0, 1);
+        mediaService.addMedia(book);
+        mediaService.addMedia(cd);
+        mediaService.addMedia(emptyCd);
+
+        assertEquals(2, mediaService.getAvailableCount());
+        assertEquals(List.of("C-1"), isbns(mediaService.searchAvailable("java", CD.class, 0, 10)));
+
+        assertTrue(mediaService.borrow(cd, "bob"));
+        assertTrue(mediaService.searchAvailable("java", CD.class, 0, 10).isEmpty());
+        assertEquals(List.of("B-1"), isbns(mediaService.searchAvailable(null, null, 0, 10)));
+
+        assertTrue(mediaService.returnMedia(cd, "bob"));
+        emptyCd.returnOne();
+        assertEquals(List.of("C-1", "C-2"), mediaService.getAvailableCDs().stream().map(CD::getIsbn).toList());
+
+        assertTrue(mediaService.updateMediaQuantity("B-1", 0));
+        assertTrue(mediaService.getAvailableBooks().isEmpty());
+        book.setTotalCopies(2);
+        book.setAvailableCopies(2);
+        assertEquals(List.of("B-1"), isbns(mediaService.searchAvailable("basics", Book.class, 0, 10)));
+
+        mediaService.deleteMedia("C-2");
+        emptyCd.setAvailable(true);
+        assertEquals(2, mediaService.getAvailableCount(), "Deleted items stay out of the index");
+        assertEquals(List.of("C-1"), isbns(mediaService.searchAvailable("", null, 1, 10)));
+    }
+
+    @Test
+    void searchAvailable_pagesTheShelfInTitleOrderAsAvailabilityChanges() {
+        Book delta = new Book("Delta", "A", "B-4", 1, 1);
+        mediaService.addMedia(delta);
+        mediaService.addMedia(new CD("charlie", "A", "C-3", 1, 1));
+        mediaService.addMedia(new Book("Alpha", "A", "B-1", 1, 1));
+        mediaService.addMedia(new Book("Bravo", "A", "B-2", 0, 1));
+        mediaService.addMedia(new Book("Echo", "A", "B-5", 2, 2));
+
+        assertEquals(List.of("B-1", "C-3"), isbns(mediaService.searchAvailable(null, null, 0, 2)));
+        assertEquals(List.of("B-4", "B-5"), isbns(mediaService.searchAvailable(null, null, 2, 2)));
+        assertEquals(List.of("B-4", "B-5"), isbns(mediaService.searchAvailable(null, Book.class, 1, 5)));
+
+        assertTrue(mediaService.borrow(delta, "bob"));
+        mediaService.findByIsbn("B-2").returnOne();
+        assertEquals(List.of("B-1", "B-2", "C-3", "B-5"), isbns(mediaService.searchAvailable(null, null, 0, 10)));
+    }
 }
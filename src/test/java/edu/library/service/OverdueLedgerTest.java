@@ -0,0 +1,138 @@
+package edu.library.service;
+
+import edu.library.domain.fine.FineCalculator;
+import edu.library.domain.model.Book;
+import edu.library.domain.model.BorrowRecord;
+import edu.library.domain.model.CD;
+import edu.library.domain.model.Media;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OverdueLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final LocalDate today = LocalDate.of(2024, 3, 10);
+
+    @Test
+    void getAll_computesItemsAndFinesInOnePassPerDay() {
+        BorrowRecordService brs = mock(BorrowRecordService.class);
+        when(brs.activeLoans()).thenReturn(Arrays.asList(
+                new BorrowRecord("amal", "B1", today.minusDays(2), false, null),
+                new BorrowRecord("amal", "C1", today.minusDays(1), false, null),
+                new BorrowRecord("amal", "B1", today.minusDays(9), true, today.minusDays(5)),
+                new BorrowRecord("omar", "B1", today.plusDays(1), false, null)
+        ));
+        Map<String, Media> catalog = Map.of(
+                "B1", new Book("Book", "A", "B1", 1, 1),
+                "C1", new CD("CD", "A", "C1", 1, 1));
+        AtomicReference<LocalDate> clock = new AtomicReference<>(today);
+
+        OverdueLedger ledger = new OverdueLedger(brs, clock::get, catalog::get);
+
+        OverdueLedger.UserOverdue amal = ledger.forUser("amal");
+        assertEquals(2, amal.count());
+        assertEquals(2 * 10 + 20, amal.totalFine());
+        assertEquals(0, ledger.overdueCount("omar"));
+        assertEquals(1, ledger.getAll().size());
+        verify(brs, times(1)).activeLoans();
+
+        clock.set(today.plusDays(1));
+        assertEquals(0, ledger.overdueCount("omar"));
+        assertEquals(3 * 10 + 2 * 20, ledger.forUser("amal").totalFine());
+        verify(brs, times(2)).activeLoans();
+    }
+
+    @Test
+    void borrowAndReturn_onlyRecomputeTheAffectedUser() {
+        BorrowRecordService brs = spy(new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString()));
+        brs.addBorrowRecord(new BorrowRecord("amal", "B1", today.minusDays(3), false, null));
+        brs.addBorrowRecord(new BorrowRecord("omar", "B2", today.minusDays(1), false, null));
+
+        OverdueLedger ledger = new OverdueLedger(brs, () -> today);
+        assertEquals(1, ledger.overdueCount("amal"));
+        assertEquals(1, ledger.overdueCount("omar"));
+
+        brs.recordReturn("amal", "B1", today);
+        brs.addBorrowRecord(new BorrowRecord("omar", "B3", today.minusDays(4), false, null));
+
+        assertEquals(0, ledger.overdueCount("amal"));
+        assertEquals(2, ledger.overdueCount("omar"));
+        assertFalse(ledger.getAll().containsKey("amal"));
+        verify(brs, times(1)).activeLoans();
+    }
+
+    @Test
+    void updateFinesOnStartup_usesLedgerFines() {
+        BorrowRecordService brs = new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString());
+        FineService fines = new FineService(tempDir.resolve("fines.txt").toString());
+        MediaService media = new MediaService(tempDir.resolve("media.txt").toString(), brs, fines,
+                () -> today, new FineCalculator());
+        media.addMedia(new CD("CD", "A", "C1", 1, 1));
+        brs.addBorrowRecord(new BorrowRecord("amal", "C1", today.minusDays(2), false, null));
+
+        media.updateFinesOnStartup();
+
+        assertEquals(40, fines.getBalance("amal"));
+        assertSame(media.getOverdueLedger(), media.getOverdueLedger());
+        assertEquals(1, media.getOverdueLedger().overdueCount("amal"));
+    }
+
+    @Test
+    void rebuild_readsTheActiveLoansNotTheHistory() {
+        BorrowRecordService brs = spy(new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString()));
+        brs.addBorrowRecord(new BorrowRecord("amal", "B1", today.minusDays(9), true, today.minusDays(5)));
+        brs.addBorrowRecord(new BorrowRecord("amal", "B2", today.minusDays(3), false, null));
+        brs.addBorrowRecord(new BorrowRecord("omar", "B3", today.plusDays(3), false, null));
+
+        OverdueLedger ledger = new OverdueLedger(brs, () -> today);
+
+        assertEquals(1, ledger.overdueCount("amal"));
+        assertEquals(List.of("amal"), List.copyOf(ledger.getAll().keySet()));
+        verify(brs, never()).getRecords();
+        verify(brs, never()).snapshotRecords();
+    }
+
+    @Test
+    void loanChangeDuringFirstBuild_isNotLost() {
+        BorrowRecordService brs = mock(BorrowRecordService.class);
+        AtomicReference<OverdueLedger> ledger = new AtomicReference<>();
+        // desk ثاني بيسجّل استعارة متأخرة لأمل بين ما قرأنا السجلات وما خلص البناء
+        when(brs.activeLoans()).thenAnswer(inv -> {
+            ledger.get().invalidate("amal");
+            return List.of();
+        });
+        when(brs.getActiveBorrowRecordsForUser("amal")).thenReturn(List.of(
+                new BorrowRecord("amal", "B1", today.minusDays(2), false, null)));
+        ledger.set(new OverdueLedger(brs, () -> today));
+
+        assertTrue(ledger.get().getAll().isEmpty());
+        assertEquals(1, ledger.get().overdueCount("amal"));
+    }
+
+    @Test
+    void close_stopsListeningToLoanChanges() {
+        BorrowRecordService brs = spy(new BorrowRecordService(tempDir.resolve("borrow_records.txt").toString()));
+        brs.addBorrowRecord(new BorrowRecord("amal", "B1", today.minusDays(3), false, null));
+        OverdueLedger ledger = new OverdueLedger(brs, () -> today);
+        assertEquals(1, ledger.overdueCount("amal"));
+
+        ledger.close();
+        brs.recordReturn("amal", "B1", today);
+
+        assertEquals(1, ledger.overdueCount("amal"), "A closed ledger is no longer told about returns");
+        verify(brs, never()).getActiveBorrowRecordsForUser("amal");
+        assertEquals(0, new OverdueLedger(brs, () -> today).overdueCount("amal"));
+    }
+}
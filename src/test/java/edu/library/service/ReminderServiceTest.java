@@ -2,6 +2,9 @@ package edu.library.service;
 
 import edu.library.domain.model.BorrowRecord;
 import edu.library.domain.model.Roles;
+import edu.library.domain.notification.DeliveryReport;
+import edu.library.domain.notification.EmailDeliveryQueue;
+import edu.library.domain.notification.EmailServer;
 import edu.library.domain.notification.Observer;
 import edu.library.domain.time.TimeProvider;
 import org.junit.jupiter.api.Test;
@@ -9,8 +12,10 @@ import org.junit.jupiter.api.Test;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class ReminderServiceTest {
@@ -33,7 +38,7 @@ class ReminderServiceTest {
                 null
         );
 
-        when(borrowRecordService.getRecords())
+        when(borrowRecordService.activeLoans())
                 .thenReturn(Arrays.asList(overdueRecord));
 
         AuthService authService = mock(AuthService.class);
@@ -57,7 +62,7 @@ class ReminderServiceTest {
         TimeProvider timeProvider = () -> today;
 
         BorrowRecordService borrowRecordService = mock(BorrowRecordService.class);
-        when(borrowRecordService.getRecords()).thenReturn(Collections.emptyList());
+        when(borrowRecordService.activeLoans()).thenReturn(Collections.emptyList());
 
         AuthService authService = mock(AuthService.class);
         Roles user = new Roles("erin", "pw", "MEMBER", "erin@example.com");
@@ -129,7 +134,7 @@ class ReminderServiceTest {
         BorrowRecord overdue = new BorrowRecord("john", "X", today.minusDays(2), false, null);
 
         BorrowRecordService brs = mock(BorrowRecordService.class);
-        when(brs.getRecords()).thenReturn(Collections.singletonList(overdue));
+        when(brs.activeLoans()).thenReturn(Collections.singletonList(overdue));
 
         Roles user = new Roles("john", "pw", "MEMBER", "john@example.com");
 
@@ -153,7 +158,7 @@ class ReminderServiceTest {
         BorrowRecord notOverdue = new BorrowRecord("john", "X", today.plusDays(2), false, null);
 
         BorrowRecordService brs = mock(BorrowRecordService.class);
-        when(brs.getRecords()).thenReturn(Collections.singletonList(notOverdue));
+        when(brs.activeLoans()).thenReturn(Collections.singletonList(notOverdue));
 
         Roles user = new Roles("john", "pw", "MEMBER", "john@example.com");
 
@@ -213,7 +218,7 @@ class ReminderServiceTest {
         );
 
         BorrowRecordService brs = mock(BorrowRecordService.class);
-        when(brs.getRecords()).thenReturn(Collections.singletonList(overdueRecord));
+        when(brs.activeLoans()).thenReturn(Collections.singletonList(overdueRecord));
 
         Roles user = new Roles("alice", "pw", "MEMBER", "alice@example.com");
 
@@ -300,7 +305,7 @@ class ReminderServiceTest {
         service.sendReminders();
     }
 
-    // 2. calculateOverdueCounts: getRecords() ترجع قائمة فارغة
+    // 2. calculateOverdueCounts: activeLoans() ترجع قائمة فارغة
     @Test
     void calculateOverdueCounts_noRecords_returnsEmptyMap() {
         BorrowRecordService brs = mock(BorrowRecordService.class);
@@ -308,7 +313,7 @@ class ReminderServiceTest {
         TimeProvider tp = () -> LocalDate.now();
         ReminderService service = new ReminderService(brs, auth, tp);
 
-        when(brs.getRecords()).thenReturn(Collections.emptyList());
+        when(brs.activeLoans()).thenReturn(Collections.emptyList());
 
         // نستدعي sendReminders لكي يغطي calculateOverdueCounts branch
         when(auth.getUsers()).thenReturn(Collections.emptyList());
@@ -335,4 +340,33 @@ class ReminderServiceTest {
         verify(observer, never()).notify(any(), any());
     }
 
+    @Test
+    void sendRemindersAsync_queuesEmailsOnlyForOverdueUsers() throws Exception {
+        LocalDate today = LocalDate.of(2024, 1, 10);
+        BorrowRecordService brs = mock(BorrowRecordService.class);
+        when(brs.activeLoans()).thenReturn(Arrays.asList(
+                new BorrowRecord("dana", "I1", today.minusDays(2), false, null),
+                new BorrowRecord("dana", "I2", today.minusDays(1), false, null),
+                new BorrowRecord("erin", "I3", today.plusDays(3), false, null)
+        ));
+
+        AuthService auth = mock(AuthService.class);
+        when(auth.getUsers()).thenReturn(Arrays.asList(
+                new Roles("dana", "pw", "MEMBER", "dana@example.com"),
+                new Roles("erin", "pw", "MEMBER", "erin@example.com")
+        ));
+
+        EmailServer server = mock(EmailServer.class);
+        when(server.sendBatch(any())).thenCallRealMethod();
+
+        ReminderService reminderService = new ReminderService(brs, auth, () -> today);
+        try (EmailDeliveryQueue queue = new EmailDeliveryQueue(server, 1, 10, 10, 1, 0)) {
+            DeliveryReport report = reminderService.sendRemindersAsync(queue);
+            assertTrue(report.await(5, TimeUnit.SECONDS));
+            assertEquals(1, report.getSentCount());
+        }
+
+        verify(server).sendEmail("dana@example.com", "You have 2 overdue item(s).");
+        verify(server, never()).sendEmail(eq("erin@example.com"), any());
+    }
 }